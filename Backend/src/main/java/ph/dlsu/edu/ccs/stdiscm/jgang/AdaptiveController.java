@@ -0,0 +1,165 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdaptiveController resizes the save workers and the queue capacity while the
+ * consumer runs, since the right values depend on the disk, the network and the
+ * mix of file sizes, which all change over time.
+ * <p>
+ * Every interval it looks at how many bytes were written and how long videos
+ * waited in the queue. Workers are added one at a time while each new worker
+ * still raises write throughput; once one does not, the pool steps back, and
+ * it is cut by a quarter if videos are also waiting longer than the target.
+ * The queue capacity grows by one while videos are being turned away and is
+ * cut by a quarter whenever videos wait longer than the target.
+ */
+public class AdaptiveController {
+    // Another worker has to raise throughput by at least this much to be kept
+    private static final double IMPROVEMENT = 1.05;
+    private static final int HISTORY_SIZE = 20;
+
+    private static final LongAdder bytesWritten = new LongAdder();
+    private static final Deque<String> decisions = new ArrayDeque<>();
+
+    private static WorkerPool workers;
+    private static int minWorkers;
+    private static int maxWorkers;
+    private static int minCapacity;
+    private static int maxCapacity;
+    private static long targetWaitNanos;
+
+    private static double lastThroughput;
+    private static int lastDirection; // +1 after adding workers, -1 after removing them
+    private static volatile String lastSample = "No samples yet";
+
+    private AdaptiveController() {
+    }
+
+    /**
+     * Counts bytes that have been written to the disk.
+     */
+    public static void recordWrite(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Starts tuning the given workers and the video queue within the given bounds.
+     *
+     * @param pool         The save workers to resize.
+     * @param minWorkers   The fewest workers to run.
+     * @param maxWorkers   The most workers to run.
+     * @param minCapacity  The smallest queue capacity to allow.
+     * @param maxCapacity  The largest queue capacity to allow.
+     * @param intervalMs   How often to sample and adjust.
+     * @param targetWaitMs How long videos should wait in the queue at most.
+     */
+    public static void start(WorkerPool pool, int minWorkers, int maxWorkers, int minCapacity, int maxCapacity,
+                             long intervalMs, long targetWaitMs) {
+        workers = pool;
+        AdaptiveController.minWorkers = Math.max(1, minWorkers);
+        AdaptiveController.maxWorkers = Math.max(AdaptiveController.minWorkers, maxWorkers);
+        AdaptiveController.minCapacity = Math.max(1, minCapacity);
+        AdaptiveController.maxCapacity = Math.max(AdaptiveController.minCapacity, maxCapacity);
+        targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMs);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "adaptive-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                adjust(intervalMs / 1000.0);
+            } catch (RuntimeException e) {
+                Log.warn("Adaptive controller error: {}", e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        VideoHttpServer.addStatusPage("autotune", AdaptiveController::status);
+    }
+
+    private static void adjust(double intervalSeconds) {
+        long taken = VideoQueue.drainTaken();
+        long waitNanos = VideoQueue.drainWaitNanos();
+        long rejected = VideoQueue.drainRejected();
+        int backlog = VideoQueue.size();
+        double throughput = bytesWritten.sumThenReset() / intervalSeconds;
+        long avgWaitNanos = taken > 0 ? waitNanos / taken : 0;
+        boolean waitingTooLong = avgWaitNanos > targetWaitNanos;
+
+        int workerCount = workers.size();
+        int newWorkerCount = workerCount;
+        int direction = 0;
+
+        if (backlog > 0 || rejected > 0) {
+            if (lastDirection > 0 && throughput < lastThroughput * IMPROVEMENT) {
+                // The last worker did not help, so the disk is the bottleneck
+                newWorkerCount = waitingTooLong ? workerCount * 3 / 4 : workerCount - 1;
+                direction = -1;
+            } else if (lastDirection < 0 && throughput * IMPROVEMENT < lastThroughput) {
+                // Backed off too far
+                newWorkerCount = workerCount + 1;
+                direction = 1;
+            } else if (lastDirection > 0 || (lastDirection == 0 && (waitingTooLong || rejected > 0))) {
+                // Keep probing upwards while it pays off; after backing off, hold steady
+                newWorkerCount = workerCount + 1;
+                direction = 1;
+            }
+        } else if (throughput == 0) {
+            // Nothing to do, release a worker
+            newWorkerCount = workerCount - 1;
+        }
+        newWorkerCount = Math.max(minWorkers, Math.min(maxWorkers, newWorkerCount));
+        if (newWorkerCount == workerCount) direction = 0;
+
+        int capacity = VideoQueue.getCapacity();
+        int newCapacity = capacity;
+        if (waitingTooLong) {
+            newCapacity = capacity * 3 / 4;
+        } else if (rejected > 0) {
+            newCapacity = capacity + 1;
+        }
+        newCapacity = Math.max(minCapacity, Math.min(maxCapacity, newCapacity));
+
+        lastSample = String.format("%.1f KB/s written, %d ms avg wait, %d queued, %d rejected",
+                throughput / 1024, TimeUnit.NANOSECONDS.toMillis(avgWaitNanos), backlog, rejected);
+        lastThroughput = throughput;
+        lastDirection = direction;
+
+        if (newWorkerCount != workerCount || newCapacity != capacity) {
+            workers.resize(newWorkerCount);
+            VideoQueue.setCapacity(newCapacity);
+
+            String decision = "Autotune: workers " + workerCount + " -> " + newWorkerCount
+                    + ", queue capacity " + capacity + " -> " + newCapacity + " (" + lastSample + ")";
+            Log.info("{}", decision);
+            synchronized (decisions) {
+                if (decisions.size() == HISTORY_SIZE) decisions.removeFirst();
+                decisions.addLast(decision);
+            }
+        }
+    }
+
+    /**
+     * @return The current settings, the latest sample and the recent decisions.
+     */
+    public static String status() {
+        StringBuilder status = new StringBuilder()
+                .append("workers=").append(workers.size())
+                .append(" (").append(minWorkers).append('-').append(maxWorkers).append(")\n")
+                .append("queue_capacity=").append(VideoQueue.getCapacity())
+                .append(" (").append(minCapacity).append('-').append(maxCapacity).append(")\n")
+                .append("last_sample=").append(lastSample).append('\n')
+                .append("decisions:\n");
+        synchronized (decisions) {
+            decisions.forEach(decision -> status.append(decision).append('\n'));
+        }
+        return status.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CommitEvents notifies subscribed viewers whenever the consumer has finished
+ * writing a video to the disk. Each event is a single line of the form
+ * {@code committed:<name>\t<size>\t<path>}, so viewers only ever learn about
+ * complete files.
+ * <p>
+ * A new subscriber first receives a single {@code subscribed} line. Every
+ * video committed after that line is announced, so a viewer that scans the
+ * existing videos only once it has seen the line cannot miss one.
+ */
+public class CommitEvents {
+    private static final byte[] SUBSCRIBED = "subscribed\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final List<SocketChannel> subscribers = new CopyOnWriteArrayList<>();
+    private static final ExecutorService publisher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "commit-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CommitEvents() {
+    }
+
+    /**
+     * Starts accepting subscribers on the given port.
+     *
+     * @param port The port viewers connect to.
+     */
+    public static void start(int port) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+
+        Thread acceptThread = new Thread(() -> {
+            while (serverChannel.isOpen()) {
+                try {
+                    SocketChannel subscriber = serverChannel.accept();
+                    // Subscribers are written to without blocking so a slow viewer cannot stall the others
+                    subscriber.configureBlocking(false);
+                    // Register on the publisher thread so the confirmation is ordered with the events
+                    publisher.submit(() -> subscribe(subscriber));
+                } catch (IOException e) {
+                    Log.warn("Error accepting commit event subscriber: {}", e.getMessage());
+                }
+            }
+        }, "commit-events-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    private static void subscribe(SocketChannel subscriber) {
+        String address = String.valueOf(subscriber.socket().getRemoteSocketAddress());
+        subscribers.add(subscriber);
+        if (send(subscriber, SUBSCRIBED)) {
+            Log.info("Commit event subscriber connected: {}", address);
+        }
+    }
+
+    /**
+     * Announces a video that has been completely written to the disk.
+     *
+     * @param name The name of the video.
+     * @param size The size of the video in bytes.
+     * @param path The location of the video on the disk.
+     */
+    public static void publish(String name, long size, Path path) {
+        if (subscribers.isEmpty()) return;
+
+        byte[] event = ("committed:" + name + "\t" + size + "\t" + path.toAbsolutePath() + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        publisher.submit(() -> broadcast(event));
+    }
+
+    private static void broadcast(byte[] event) {
+        for (SocketChannel subscriber : subscribers) {
+            send(subscriber, event);
+        }
+    }
+
+    /**
+     * @return Whether the event was written; a subscriber that cannot take it is dropped.
+     */
+    private static boolean send(SocketChannel subscriber, byte[] event) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(event);
+            subscriber.write(buffer);
+            if (buffer.hasRemaining()) {
+                // The subscriber is not keeping up; drop it and let it rescan when it reconnects
+                throw new IOException("subscriber is not reading events");
+            }
+            return true;
+        } catch (IOException e) {
+            Log.warn("Dropping commit event subscriber {}: {}",
+                    String.valueOf(subscriber.socket().getRemoteSocketAddress()), e.getMessage());
+            subscribers.remove(subscriber);
+            try {
+                subscriber.close();
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+}
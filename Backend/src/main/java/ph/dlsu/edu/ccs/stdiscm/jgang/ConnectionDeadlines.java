@@ -0,0 +1,236 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ConnectionDeadlines evicts producers that stall or trickle data, so that one
+ * broken or hostile client cannot hold a thread forever.
+ * <p>
+ * A connection must send its whole header within the header timeout, must not
+ * go quiet for longer than the idle timeout while sending a video, and must
+ * keep up an average of at least the minimum rate once the grace period is
+ * over. A persistent connection may sit idle between videos for the
+ * keep-alive timeout. No deadline applies while a video waits in the queue,
+ * since the producer is not at fault then.
+ * <p>
+ * Deadlines are checked lazily on a single {@link HashedWheelTimer}: progress
+ * only updates a timestamp, and when a check fires before the deadline has
+ * really passed it is simply scheduled again.
+ */
+public class ConnectionDeadlines {
+    private enum Phase {HEADER, QUEUED, BODY, IDLE}
+
+    private static final long RATE_CHECK_MS = 1000;
+
+    private static final HashedWheelTimer timer = new HashedWheelTimer("connection-deadlines", 100, TimeUnit.MILLISECONDS, 512);
+    private static final Map<SocketChannel, Guard> guards = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> evictions = new ConcurrentHashMap<>();
+
+    private static long headerTimeoutMs = 10_000;
+    private static long idleTimeoutMs = 30_000;
+    private static long minBytesPerSecond = 1024;
+    private static long minRateGraceMs = 5_000;
+    private static long keepAliveTimeoutMs = 120_000;
+
+    private ConnectionDeadlines() {
+    }
+
+    /**
+     * Sets the deadlines. A timeout or rate of 0 turns that check off.
+     */
+    public static void configure(long headerTimeoutMs, long idleTimeoutMs, long minBytesPerSecond,
+                                 long minRateGraceMs, long keepAliveTimeoutMs) {
+        ConnectionDeadlines.headerTimeoutMs = headerTimeoutMs;
+        ConnectionDeadlines.idleTimeoutMs = idleTimeoutMs;
+        ConnectionDeadlines.minBytesPerSecond = minBytesPerSecond;
+        ConnectionDeadlines.minRateGraceMs = minRateGraceMs;
+        ConnectionDeadlines.keepAliveTimeoutMs = keepAliveTimeoutMs;
+
+        VideoHttpServer.addStatusPage("connections", ConnectionDeadlines::status);
+    }
+
+    /**
+     * The connection is about to send a header.
+     */
+    public static void awaitHeader(SocketChannel channel) {
+        enter(channel, Phase.HEADER);
+    }
+
+    /**
+     * The connection's video is waiting in the queue.
+     */
+    public static void pause(SocketChannel channel) {
+        enter(channel, Phase.QUEUED);
+    }
+
+    /**
+     * The connection is about to send the body of a video.
+     */
+    public static void awaitBody(SocketChannel channel) {
+        enter(channel, Phase.BODY);
+    }
+
+    /**
+     * The persistent connection is idle between videos.
+     */
+    public static void awaitNext(SocketChannel channel) {
+        enter(channel, Phase.IDLE);
+    }
+
+    /**
+     * Records bytes received on the connection.
+     */
+    public static void progress(SocketChannel channel, long bytes) {
+        Guard guard = guards.get(channel);
+        if (guard != null) {
+            guard.bytes += bytes;
+            guard.lastProgress = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Stops watching a connection that is done.
+     */
+    public static void release(SocketChannel channel) {
+        Guard guard = guards.remove(channel);
+        if (guard != null) guard.cancel();
+    }
+
+    /**
+     * @return The connections being watched and the evictions so far by reason.
+     */
+    public static String status() {
+        StringBuilder status = new StringBuilder("watched_connections=").append(guards.size()).append('\n');
+        new TreeMap<>(evictions).forEach((reason, count) ->
+                status.append("evicted{reason=").append(reason).append("}=").append(count.sum()).append('\n'));
+        return status.toString();
+    }
+
+    private static void enter(SocketChannel channel, Phase phase) {
+        Guard guard = guards.computeIfAbsent(channel, Guard::new);
+        synchronized (guard) {
+            long now = System.currentTimeMillis();
+            guard.phase = phase;
+            guard.phaseStart = now;
+            guard.lastProgress = now;
+            guard.bytes = 0;
+            guard.reschedule(now);
+        }
+    }
+
+    private static void evict(Guard guard, String reason) {
+        guards.remove(guard.channel);
+        evictions.computeIfAbsent(reason, key -> new LongAdder()).increment();
+        // Log the address now; the channel is closed by the time the message is written
+        Log.warn("Evicting {}: {}", String.valueOf(guard.channel.socket().getRemoteSocketAddress()), reason);
+
+        // Closing the channel makes any thread reading from it fail right away
+        try {
+            guard.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Deadline state of a single connection.
+     */
+    private static final class Guard {
+        private final SocketChannel channel;
+        private volatile Phase phase;
+        private volatile long phaseStart;
+        private volatile long lastProgress;
+        private volatile long bytes; // Only written by the thread reading the connection
+        private HashedWheelTimer.Timeout timeout;
+        private long checkAt = Long.MAX_VALUE;
+
+        private Guard(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return When the connection next needs checking, or {@link Long#MAX_VALUE} if never.
+         */
+        private long nextCheck(long now) {
+            switch (phase) {
+                case HEADER:
+                    return headerTimeoutMs > 0 ? phaseStart + headerTimeoutMs : Long.MAX_VALUE;
+                case BODY:
+                    long next = idleTimeoutMs > 0 ? lastProgress + idleTimeoutMs : Long.MAX_VALUE;
+                    if (minBytesPerSecond > 0) {
+                        next = Math.min(next, Math.max(phaseStart + minRateGraceMs, now + RATE_CHECK_MS));
+                    }
+                    return next;
+                case IDLE:
+                    return keepAliveTimeoutMs > 0 ? phaseStart + keepAliveTimeoutMs : Long.MAX_VALUE;
+                default:
+                    return Long.MAX_VALUE;
+            }
+        }
+
+        /**
+         * @return Why the connection should be evicted, or null if it is fine.
+         */
+        private String violation(long now) {
+            switch (phase) {
+                case HEADER:
+                    return headerTimeoutMs > 0 && now - phaseStart >= headerTimeoutMs ? "header_timeout" : null;
+                case BODY:
+                    if (idleTimeoutMs > 0 && now - lastProgress >= idleTimeoutMs) return "idle_timeout";
+                    long elapsed = now - phaseStart;
+                    if (minBytesPerSecond > 0 && elapsed >= minRateGraceMs && bytes * 1000 / elapsed < minBytesPerSecond) {
+                        return "below_min_rate";
+                    }
+                    return null;
+                case IDLE:
+                    return keepAliveTimeoutMs > 0 && now - phaseStart >= keepAliveTimeoutMs ? "keepalive_timeout" : null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Makes sure a check is scheduled no later than the current phase needs one.
+         */
+        private void reschedule(long now) {
+            long next = nextCheck(now);
+            if (next >= checkAt && timeout != null) return; // The pending check comes soon enough
+
+            cancel();
+            checkAt = next;
+            if (next != Long.MAX_VALUE) {
+                timeout = timer.schedule(this::check, next - now, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void check() {
+            timeout = null;
+            checkAt = Long.MAX_VALUE;
+            if (!channel.isOpen()) {
+                guards.remove(channel);
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            String violation = violation(now);
+            if (violation != null) {
+                evict(this, violation);
+            } else {
+                reschedule(now);
+            }
+        }
+
+        private synchronized void cancel() {
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+            checkAt = Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * ConnectionPool keeps a few long-lived connections open to one consumer and
+ * sends many videos over each of them, saving a connection setup and teardown
+ * per video. Videos are pipelined: the next video is sent without waiting for
+ * the previous one to be acknowledged, and the consumer acknowledges every
+ * video in the order it was sent.
+ */
+public class ConnectionPool {
+    private final InetSocketAddress address;
+    private final int maxConnections;
+    private final List<PipelinedConnection> connections = new ArrayList<>();
+
+    /**
+     * @param address        The consumer to connect to.
+     * @param maxConnections The most connections to keep open to the consumer.
+     */
+    public ConnectionPool(InetSocketAddress address, int maxConnections) {
+        this.address = address;
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    /**
+     * Sends a video over one of the pooled connections.
+     *
+     * @return The consumer's reply to this video once it arrives.
+     */
+    public CompletableFuture<String> send(File videoFile) throws IOException {
+        PipelinedConnection connection = acquire();
+        try {
+            return connection.send(videoFile);
+        } catch (IOException e) {
+            connection.close(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every pooled connection.
+     */
+    public synchronized void close() {
+        for (PipelinedConnection connection : connections) {
+            connection.close(new IOException("connection pool closed"));
+        }
+        connections.clear();
+    }
+
+    /**
+     * Picks the open connection with the fewest unacknowledged videos, opening
+     * a new one instead if every connection is busy and the pool is not full.
+     */
+    private synchronized PipelinedConnection acquire() throws IOException {
+        connections.removeIf(connection -> !connection.isOpen());
+
+        PipelinedConnection best = null;
+        for (PipelinedConnection connection : connections) {
+            if (best == null || connection.pendingCount() < best.pendingCount()) {
+                best = connection;
+            }
+        }
+
+        if (best == null || (best.pendingCount() > 0 && connections.size() < maxConnections)) {
+            SocketChannel channel = SocketChannel.open(address);
+            // Headers and acknowledgements are tiny, so do not let Nagle's algorithm hold them back
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            best = new PipelinedConnection(channel);
+            connections.add(best);
+        }
+        return best;
+    }
+
+    /**
+     * A single connection that carries videos one after another, matching each
+     * reply from the consumer to the oldest unacknowledged video.
+     */
+    private static final class PipelinedConnection {
+        private final SocketChannel channel;
+        private final Queue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+        private volatile boolean open = true;
+
+        private PipelinedConnection(SocketChannel channel) {
+            this.channel = channel;
+
+            Thread ackReader = new Thread(this::readAcks, "ack-reader-" + channel.socket().getLocalPort());
+            ackReader.setDaemon(true);
+            ackReader.start();
+        }
+
+        private boolean isOpen() {
+            return open;
+        }
+
+        private int pendingCount() {
+            return pending.size();
+        }
+
+        private synchronized CompletableFuture<String> send(File videoFile) throws IOException {
+            if (!open) throw new IOException("connection closed");
+
+            try (FileChannel fileChannel = FileChannel.open(videoFile.toPath(), StandardOpenOption.READ)) {
+                long fileSize = fileChannel.size();
+
+                // Register for the reply first; it cannot arrive before the video has been sent
+                CompletableFuture<String> ack = new CompletableFuture<>();
+                pending.add(ack);
+
+                // The length tells the consumer where this video ends and the next header begins
+                String header = "filesize:" + fileSize + ":" + videoFile.getName() + "\n";
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
+                while (headerBuffer.hasRemaining()) {
+                    channel.write(headerBuffer);
+                }
+
+                long position = 0;
+                while (position < fileSize) {
+                    long bytesTransferred = fileChannel.transferTo(position, fileSize - position, channel);
+                    if (bytesTransferred == 0) {
+                        throw new IOException("no progress sending " + videoFile.getName());
+                    }
+                    position += bytesTransferred;
+                }
+                return ack;
+            }
+        }
+
+        private void readAcks() {
+            // Read the channel directly; a stream over it would hold the lock transferTo needs
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            StringBuilder reply = new StringBuilder();
+            try {
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        char c = (char) buffer.get();
+                        if (c != '\n') {
+                            reply.append(c);
+                            continue;
+                        }
+
+                        CompletableFuture<String> ack = pending.poll();
+                        if (ack == null) {
+                            throw new IOException("unexpected reply " + reply);
+                        }
+                        ack.complete(reply.toString());
+                        reply.setLength(0);
+                    }
+                    buffer.clear();
+                }
+                close(new IOException("connection closed by consumer"));
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        private void close(IOException cause) {
+            open = false;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+
+            // Videos that were never acknowledged have to be sent again
+            CompletableFuture<String> ack;
+            while ((ack = pending.poll()) != null) {
+                ack.completeExceptionally(cause);
+            }
+        }
+    }
+}
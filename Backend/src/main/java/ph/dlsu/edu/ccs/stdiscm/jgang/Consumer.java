@@ -3,13 +3,23 @@ package ph.dlsu.edu.ccs.stdiscm.jgang;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Consumer is responsible for receiving uploaded videos from producers
@@ -17,56 +27,105 @@ import java.util.concurrent.TimeUnit;
  */
 public class Consumer {
 
+    /**
+     * Suffix of videos that are still being received. A video only gets its
+     * real name once it has been completely written.
+     */
+    public static final String PARTIAL_SUFFIX = ".part";
+
+    // Numbers the partial files, so that uploads of the same video never share one
+    private static final AtomicLong uploadIds = new AtomicLong();
+
+    private static final int MAX_HEADER_SIZE = 1024;
+    // How long a save worker waits for more of a video before checking the connection again
+    private static final long READ_WAIT_MS = 1000;
+
     private static ExecutorService executorService;
-    private static Thread processorThread;
+    private static WorkerPool saveWorkers;
+    private static Selector selector;
+    // Connections handed back to the selector to collect their next header
+    private static final Queue<InboundHeader> headerRegistrations = new ConcurrentLinkedQueue<>();
 
     private Consumer() {
     }
 
     public static void main(String[] args) {
         if (!ConsumerConfig.init()) {
-            System.err.println("Failed to initialize Consumer configuration.");
+            Log.error("Failed to initialize Consumer configuration.");
             return;
         }
+        Log.configure(ConsumerConfig::get);
 
         // Convert the port from String to int
         int port;
         try {
             port = Integer.parseInt(ConsumerConfig.get("port"));
         } catch (NumberFormatException e) {
-            System.err.println("Invalid port number in configuration: " + e.getMessage());
+            Log.error("Invalid port number in configuration: {}", e.getMessage());
             return;
         }
-        System.out.println("Consumer running on port " + port);
+        Log.info("Consumer running on port {}", port);
 
         int threadCount = Integer.parseInt(ConsumerConfig.get("threads"));
+        int queueSize = Integer.parseInt(ConsumerConfig.get("queue_size"));
         executorService = Executors.newFixedThreadPool(threadCount);
+        VideoQueue.setCapacity(queueSize);
 
         // Create the folder for storing videos if it doesn't exist
         File folder = new File(ConsumerConfig.get("video_directory"));
         if (!folder.exists()) folder.mkdirs();
+        deletePartialFiles(folder.toPath());
+
+        // Let viewers subscribe to finished uploads
+        String eventPort = ConsumerConfig.get("event_port");
+        if (eventPort != null) {
+            try {
+                CommitEvents.start(Integer.parseInt(eventPort));
+                Log.info("Publishing commit events on port {}", eventPort);
+            } catch (NumberFormatException | IOException e) {
+                Log.warn("Unable to publish commit events: {}", e.getMessage());
+            }
+        }
 
-        // Start a processor thread to handle videos from the queue
-        processorThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    VideoFile video = VideoQueue.getVideo();
-                    saveVideo(video.getHeader(), video.getClientChannel(), video.getLeftoverBuffer());// blocks until a video is available
-                    video.close();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                } catch (Exception e) {
-                    System.err.println("Error processing video: " + e.getMessage());
-                }
+        // Serve stored videos to viewers that do not share our filesystem
+        String httpPort = ConsumerConfig.get("http_port");
+        if (httpPort != null) {
+            try {
+                VideoHttpServer.start(Integer.parseInt(httpPort), folder.toPath());
+                Log.info("Serving videos over HTTP on port {}", httpPort);
+            } catch (NumberFormatException | IOException e) {
+                Log.warn("Unable to serve videos over HTTP: {}", e.getMessage());
             }
-        });
-        processorThread.setDaemon(true);
-        processorThread.start();
+        }
+
+        // Start the workers that save videos from the queue
+        saveWorkers = new WorkerPool("save-worker", Consumer::processNextVideo);
+        saveWorkers.resize(threadCount);
+
+        // Let the worker count and queue capacity follow the load, within the configured bounds
+        if (Boolean.parseBoolean(ConsumerConfig.get("autotune"))) {
+            AdaptiveController.start(saveWorkers,
+                    ConsumerConfig.getInt("threads.min", 1),
+                    ConsumerConfig.getInt("threads.max", threadCount),
+                    ConsumerConfig.getInt("queue_size.min", 1),
+                    ConsumerConfig.getInt("queue_size.max", queueSize),
+                    ConsumerConfig.getInt("autotune.interval_ms", 2000),
+                    ConsumerConfig.getInt("autotune.target_wait_ms", 500));
+            Log.info("Adaptive tuning enabled");
+        }
+
+        // Drop producers that stall or trickle data instead of letting them hold a thread
+        ConnectionDeadlines.configure(
+                ConsumerConfig.getInt("header_timeout_ms", 10_000),
+                ConsumerConfig.getInt("idle_timeout_ms", 30_000),
+                ConsumerConfig.getInt("min_bytes_per_second", 1024),
+                ConsumerConfig.getInt("min_rate_grace_ms", 5_000),
+                ConsumerConfig.getInt("keepalive_timeout_ms", 120_000));
 
         // Start the server to accept incoming connections
         try {
             // Create a selector
-            Selector selector = Selector.open();
+            selector = Selector.open();
 
             // Open a server socket channel
             ServerSocketChannel serverChannel = ServerSocketChannel.open();
@@ -80,6 +139,12 @@ public class Consumer {
                 // Wait for events
                 selector.select();
 
+                // Watch persistent connections for their next header
+                InboundHeader registration;
+                while ((registration = headerRegistrations.poll()) != null) {
+                    watchForHeader(registration);
+                }
+
                 // Process the events
                 Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
                 while (keyIterator.hasNext()) {
@@ -91,135 +156,367 @@ public class Consumer {
                     if (key.isAcceptable()) {
                         // Accept new connection
                         SocketChannel clientChannel = serverChannel.accept();
+                        if (clientChannel == null) continue;
                         clientChannel.configureBlocking(false);
-
-                        // Submit to thread pool
-                        executorService.submit(() -> {
-                            if (VideoQueue.isFull()) {
-                                System.err.println("Queue is full, rejecting connection from " + clientChannel);
-
-                            } else {
-                                System.out.println("Accepted connection from " + clientChannel);
-                                handleInbound(clientChannel);
-                            }
-                        });
+                        // Acknowledgements are tiny and persistent connections wait on them
+                        clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                        // A full queue is checked once the header shows whether this is a video or a health check
+                        Log.debug("Accepted connection from {}", describe(clientChannel));
+                        // The header deadline runs from the moment the connection is accepted
+                        ConnectionDeadlines.awaitHeader(clientChannel);
+                        watchForHeader(new InboundHeader(clientChannel, true));
+                    } else if (key.isReadable()) {
+                        readHeader(key, (InboundHeader) key.attachment());
                     }
                 }
-
-
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Consumer stopped: {}", e.getMessage(), e);
         } finally {
             // Ensure that the executor service is shut down gracefully
             shutdownExecutorService();
-            System.out.println("Consumer shutdown completed.");
+            Log.info("Consumer shutdown completed.");
         }
     }
 
-    private static void handleInbound(SocketChannel clientChannel) {
+    /**
+     * Starts collecting the next header of a connection on the selector thread.
+     * Must be called on the selector thread.
+     */
+    private static void watchForHeader(InboundHeader inbound) {
+        SocketChannel clientChannel = inbound.channel;
         try {
-            // Set up buffer for the header only
-            ByteBuffer headerBuffer = ByteBuffer.allocate(1024);
-            boolean headerComplete = false;
-            StringBuilder headerBuilder = new StringBuilder();
-            String header = null;
-            ByteBuffer leftoverBuffer = null;
-
-            // Read until we get the complete header
-            while (!headerComplete && clientChannel.isOpen()) {
-                int bytesRead = clientChannel.read(headerBuffer);
-                if (bytesRead == -1) break; // Channel closed
-
-                headerBuffer.flip();
-                while (headerBuffer.hasRemaining()) {
-                    char c = (char) headerBuffer.get();
-                    if (c == '\n') {
-                        header = headerBuilder.toString();
-                        headerComplete = true;
-                    } else {
-                        headerBuilder.append(c);
-                    }
-                }
-                if (headerComplete) {
-                    int remaining = headerBuffer.remaining();
-                    leftoverBuffer = ByteBuffer.allocate(remaining);
-                    leftoverBuffer.put(headerBuffer); // copy remaining bytes
-                    leftoverBuffer.flip(); // prepare for reading
+            SelectionKey key = clientChannel.keyFor(selector);
+            if (key == null) {
+                clientChannel.register(selector, SelectionKey.OP_READ, inbound);
+            } else {
+                key.attach(inbound);
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (ClosedChannelException | CancelledKeyException e) {
+            // The producer hung up, or a deadline closed the connection, before we got to it
+            ConnectionDeadlines.release(clientChannel);
+        }
+    }
+
+    /**
+     * Reads whatever part of a header has arrived, without waiting for more,
+     * and hands the connection to the thread pool once the header is complete.
+     * Must be called on the selector thread.
+     */
+    private static void readHeader(SelectionKey key, InboundHeader inbound) {
+        SocketChannel clientChannel = inbound.channel;
+        try {
+            int bytesRead = clientChannel.read(inbound.buffer);
+            if (bytesRead == -1) {
+                // The producer is done with this connection
+                key.cancel();
+                ConnectionDeadlines.release(clientChannel);
+                clientChannel.close();
+                return;
+            }
+            if (bytesRead > 0) {
+                if (!inbound.started) {
+                    // An idle persistent connection has started sending its next video
+                    inbound.started = true;
+                    ConnectionDeadlines.awaitHeader(clientChannel);
                 }
-                headerBuffer.clear();
+                ConnectionDeadlines.progress(clientChannel, bytesRead);
             }
 
-            // If we don't have a header, close channel
+            String header = inbound.takeHeader();
             if (header == null) {
-                clientChannel.close();
+                if (!inbound.buffer.hasRemaining()) {
+                    throw new IOException("Header longer than " + MAX_HEADER_SIZE + " bytes");
+                }
                 return;
             }
 
-            // Queue the objects here:
-            if (VideoQueue.addVideo(new VideoFile(header, clientChannel, leftoverBuffer))) {
-                System.out.println("Video queued: " + header);
-            } else {
-                System.err.println("Queue is full, unable to add video: " + header);
-                clientChannel.close();
+            // Stop watching the connection while a worker owns it
+            key.interestOps(0);
+            key.attach(null);
+
+            if (!header.equals("ping") && VideoQueue.isFull()) {
+                // Turn the video away without tying up a worker; only videos count as rejected
+                Log.warn("Queue is full, rejecting video: {}", header);
+                VideoQueue.recordRejection();
+                reply(clientChannel, "BUSY");
+                return;
             }
 
+            ByteBuffer leftoverBuffer = inbound.leftover();
+            executorService.submit(() -> handleHeader(clientChannel, header, leftoverBuffer));
         } catch (IOException e) {
-            e.printStackTrace();
+            // Also reached when a deadline closed the connection under us
+            Log.warn("Error reading header from {}: {}", describe(clientChannel), e.getMessage());
+            key.cancel();
+            ConnectionDeadlines.release(clientChannel);
+            try {
+                clientChannel.close();
+            } catch (IOException ignored) {
+            }
         }
     }
 
-    private static void saveVideo(String header, SocketChannel clientChannel, ByteBuffer leftoverBuffer) throws IOException {
-        if (header.startsWith("fileput:")) {
-            // Extract filename
-            String filename = header.substring(8).trim();
+    /**
+     * Acts on a complete header: answers health checks and queues videos.
+     *
+     * @param leftoverBuffer Bytes received after the header, which belong to the video.
+     */
+    private static void handleHeader(SocketChannel clientChannel, String header, ByteBuffer leftoverBuffer) {
+        // Health checks from producers only need to know that we are responsive
+        if (header.equals("ping")) {
+            reply(clientChannel, "pong");
+            return;
+        }
+
+        // Queue the objects here. The producer is not to blame for time spent in the queue
+        ConnectionDeadlines.pause(clientChannel);
+        if (VideoQueue.addVideo(new VideoFile(header, clientChannel, leftoverBuffer))) {
+            Log.info("Video queued: {}", header);
+        } else {
+            Log.warn("Queue is full, unable to add video: {}", header);
+            reply(clientChannel, "BUSY");
+        }
+    }
+
+    private static void processNextVideo() throws InterruptedException {
+        // Wait briefly so the worker can notice when the pool shrinks
+        VideoFile video = VideoQueue.pollVideo(500, TimeUnit.MILLISECONDS);
+        if (video == null) return;
+
+        ByteBuffer pending = null;
+        try {
+            pending = saveVideo(video.getHeader(), video.getClientChannel(), video.getLeftoverBuffer());
+        } catch (IOException e) {
+            Log.warn("Error processing video: {}", e.getMessage());
+        } finally {
+            if (pending == null) {
+                ConnectionDeadlines.release(video.getClientChannel());
+                try {
+                    video.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
 
-            if (filename.endsWith(".DS_Store")) {
+        if (pending != null) continueConnection(video.getClientChannel(), pending);
+    }
+
+    /**
+     * Moves a persistent connection on to its next video. A pipelined header
+     * is handled right away on this thread; otherwise the connection waits on
+     * the selector so it does not hold a thread while idle.
+     */
+    private static void continueConnection(SocketChannel clientChannel, ByteBuffer pending) {
+        InboundHeader inbound = new InboundHeader(clientChannel, pending.hasRemaining());
+        if (inbound.started) {
+            ConnectionDeadlines.awaitHeader(clientChannel);
+            inbound.buffer.put(pending);
+            String header = inbound.takeHeader();
+            if (header != null) {
+                handleHeader(clientChannel, header, inbound.leftover());
                 return;
             }
-            //Problem is here
-            File videoFile = new File(ConsumerConfig.get("video_directory"), filename);
+        } else {
+            ConnectionDeadlines.awaitNext(clientChannel);
+        }
 
-            try (FileChannel fileChannel = FileChannel.open(videoFile.toPath(),
-                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        headerRegistrations.add(inbound);
+        selector.wakeup();
+    }
+
+    /**
+     * Saves the video that follows the header. A {@code fileput:<name>} header
+     * is followed by the file up to the end of the connection. A
+     * {@code filesize:<length>:<name>} header is followed by exactly that many
+     * bytes, after which the connection can carry another video.
+     *
+     * @return Bytes received after the video if the connection stays open, or
+     * null if it should be closed.
+     */
+    private static ByteBuffer saveVideo(String header, SocketChannel clientChannel, ByteBuffer leftoverBuffer) throws IOException {
+        String filename;
+        long length;
+        if (header.startsWith("fileput:")) {
+            filename = header.substring(8).trim();
+            length = -1;
+        } else if (header.startsWith("filesize:")) {
+            String[] fields = header.substring(9).split(":", 2);
+            try {
+                length = Long.parseLong(fields[0]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid length in header: " + header);
+            }
+            if (fields.length < 2 || length < 0) {
+                throw new IOException("Malformed header: " + header);
+            }
+            filename = fields[1].trim();
+        } else {
+            Log.warn("Unknown header: {}", header);
+            return null;
+        }
 
-                long bytesWritten = 0;
+        if (filename.endsWith(".DS_Store") && length < 0) {
+            return null;
+        }
 
-                // Write leftover buffer (data after the header)
-                if (leftoverBuffer != null && leftoverBuffer.hasRemaining()) {
-                    fileChannel.write(leftoverBuffer);
-                    bytesWritten += leftoverBuffer.remaining();
-                }
+        Path videoPath = Path.of(ConsumerConfig.get("video_directory"), filename);
+        Path partialPath = createPartialFile(videoPath.getParent(), filename);
+
+        ConnectionDeadlines.awaitBody(clientChannel);
+        long bytesWritten = 0;
+        long remaining = length >= 0 ? length : Long.MAX_VALUE;
+        try (FileChannel fileChannel = FileChannel.open(partialPath, StandardOpenOption.WRITE)) {
+
+            // Write leftover buffer (data after the header), which may run into the next video
+            if (leftoverBuffer != null && leftoverBuffer.hasRemaining()) {
+                ByteBuffer videoData = leftoverBuffer.slice();
+                videoData.limit((int) Math.min(videoData.remaining(), remaining));
+                int leftoverWritten = fileChannel.write(videoData);
+                leftoverBuffer.position(leftoverBuffer.position() + leftoverWritten);
+                bytesWritten += leftoverWritten;
+                remaining -= leftoverWritten;
+                AdaptiveController.recordWrite(leftoverWritten);
+                ConnectionDeadlines.progress(clientChannel, leftoverWritten);
+            }
+
+            // Continue reading rest of the file from the socket, never past the end of this video
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            Selector readSelector = null;
+            try {
+                while (remaining > 0) {
+                    buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                    int bytesRead = clientChannel.read(buffer);
+                    if (bytesRead == -1) {
+                        if (length < 0) break;
+                        throw new IOException("Connection closed after " + bytesWritten + " of " + length + " bytes of " + filename);
+                    }
+
+                    if (bytesRead == 0) {
+                        // Sleep until more arrives; a deadline closing the connection ends the wait
+                        if (readSelector == null) {
+                            readSelector = Selector.open();
+                            clientChannel.register(readSelector, SelectionKey.OP_READ);
+                        }
+                        readSelector.select(READ_WAIT_MS);
+                        readSelector.selectedKeys().clear();
+                        continue;
+                    }
+                    ConnectionDeadlines.progress(clientChannel, bytesRead);
 
-                // Continue reading rest of the file from the socket
-                ByteBuffer buffer = ByteBuffer.allocate(8192);
-                int bytesRead;
-                while ((bytesRead = clientChannel.read(buffer)) != -1) {
                     buffer.flip();
                     fileChannel.write(buffer);
                     bytesWritten += bytesRead;
+                    remaining -= bytesRead;
+                    AdaptiveController.recordWrite(bytesRead);
                     buffer.clear();
                 }
-
-                System.out.println("Received file: " + filename + " (" + bytesWritten + " bytes)");
+            } finally {
+                if (readSelector != null) readSelector.close();
             }
 
-            // Acknowledge receipt
-            String ackMessage = "Received: " + filename + "\n";
-            ByteBuffer ackBuffer = ByteBuffer.wrap(ackMessage.getBytes());
-            while (ackBuffer.hasRemaining()) {
-                clientChannel.write(ackBuffer);
+            Log.info("Received file: {} ({} bytes)", filename, bytesWritten);
+        } catch (IOException e) {
+            Files.deleteIfExists(partialPath);
+            throw e;
+        }
+
+        // Only expose the video under its real name once it is complete
+        Files.move(partialPath, videoPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        CommitEvents.publish(filename, bytesWritten, videoPath);
+
+        // Acknowledge receipt
+        String ackMessage = "Received: " + filename + "\n";
+        ByteBuffer ackBuffer = ByteBuffer.wrap(ackMessage.getBytes());
+        while (ackBuffer.hasRemaining()) {
+            clientChannel.write(ackBuffer);
+        }
+
+        if (length < 0) return null;
+        return leftoverBuffer != null ? leftoverBuffer : ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Creates an empty file to receive a video into, named
+     * {@code <name>.<number>.part}. Every upload gets its own file, so two
+     * uploads of the same video can be saved at once without mixing their data.
+     */
+    private static Path createPartialFile(Path directory, String filename) throws IOException {
+        while (true) {
+            Path partialPath = directory.resolve(filename + "." + uploadIds.incrementAndGet() + PARTIAL_SUFFIX);
+            try {
+                return Files.createFile(partialPath);
+            } catch (FileAlreadyExistsException e) {
+                // Left behind by an earlier run, so try the next number
             }
+        }
+    }
 
-        } else {
-            System.err.println("Unknown header: " + header);
+    /**
+     * @return The number of the upload the partial file belongs to, which is
+     * higher for uploads started later, or -1 if it is not a partial file of
+     * the video with the given name.
+     */
+    public static long uploadIdOf(String partialName, String filename) {
+        if (!partialName.startsWith(filename + ".") || !partialName.endsWith(PARTIAL_SUFFIX)) return -1;
+
+        String number = partialName.substring(filename.length() + 1, partialName.length() - PARTIAL_SUFFIX.length());
+        if (number.isEmpty() || !number.chars().allMatch(Character::isDigit)) return -1;
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return -1; // Too long to be one of ours
+        }
+    }
+
+    /**
+     * Deletes partial files left behind by an earlier run. Their uploads can
+     * never be completed, and they would be mistaken for uploads in progress.
+     */
+    private static void deletePartialFiles(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(PARTIAL_SUFFIX)).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                    Log.info("Deleted unfinished upload {}", file.getFileName().toString());
+                } catch (IOException e) {
+                    Log.warn("Unable to delete unfinished upload {}: {}", file.getFileName().toString(), e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            Log.warn("Unable to look for unfinished uploads: {}", e.getMessage());
         }
     }
 
+    /**
+     * Sends a single-line reply and closes the connection. A BUSY reply tells
+     * the producer to try another consumer.
+     */
+    private static void reply(SocketChannel clientChannel, String message) {
+        ConnectionDeadlines.release(clientChannel);
+        try (clientChannel) {
+            ByteBuffer replyBuffer = ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8));
+            while (replyBuffer.hasRemaining()) {
+                clientChannel.write(replyBuffer);
+            }
+        } catch (IOException e) {
+            Log.warn("Unable to reply to {}: {}", describe(clientChannel), e.getMessage());
+        }
+    }
+
+    /**
+     * @return The remote address, which stays readable after the connection is closed.
+     */
+    static String describe(SocketChannel clientChannel) {
+        return String.valueOf(clientChannel.socket().getRemoteSocketAddress());
+    }
+
     private static void shutdownExecutorService() {
-        // Interrupt the processor thread if it is running
-        if (processorThread != null && processorThread.isAlive()) {
-            processorThread.interrupt();
+        // Stop the save workers once they finish their current video
+        if (saveWorkers != null) {
+            saveWorkers.shutdown();
         }
 
         // Gracefully shut down the executor service
@@ -234,4 +531,44 @@ public class Consumer {
         }
     }
 
+    /**
+     * A header being collected from a connection by the selector thread.
+     */
+    private static final class InboundHeader {
+        private final SocketChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+        private boolean started; // Whether the header deadline is running
+        private int headerEnd = -1;
+
+        private InboundHeader(SocketChannel channel, boolean started) {
+            this.channel = channel;
+            this.started = started;
+        }
+
+        /**
+         * @return The header once its newline has arrived, or null if it is not complete yet.
+         */
+        private String takeHeader() {
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    headerEnd = i;
+                    // Header bytes are read one byte per character
+                    return new String(buffer.array(), 0, i, StandardCharsets.ISO_8859_1);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The bytes received after the header, which belong to the video.
+         */
+        private ByteBuffer leftover() {
+            buffer.flip();
+            buffer.position(headerEnd + 1);
+            ByteBuffer leftoverBuffer = ByteBuffer.allocate(buffer.remaining());
+            leftoverBuffer.put(buffer); // copy remaining bytes
+            leftoverBuffer.flip(); // prepare for reading
+            return leftoverBuffer;
+        }
+    }
 }
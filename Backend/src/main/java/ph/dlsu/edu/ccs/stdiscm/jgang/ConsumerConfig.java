@@ -14,7 +14,7 @@ public class ConsumerConfig {
         try {
             InputStream inputStream = ConsumerConfig.class.getClassLoader().getResourceAsStream("consumer.properties");
             if (inputStream == null) {
-                System.err.println("Error: consumer.properties not found in classpath");
+                Log.error("Error: consumer.properties not found in classpath");
                 return false;
             }
             
@@ -22,7 +22,7 @@ public class ConsumerConfig {
             initialized = true;
             return true;
         } catch (IOException e) {
-            System.err.println("Error loading configuration: " + e.getMessage());
+            Log.error("Error loading configuration: {}", e.getMessage());
             return false;
         }
     }
@@ -30,4 +30,18 @@ public class ConsumerConfig {
     public static String get(String key) {
         return CONFIG.getProperty(key);
     }
+
+    /**
+     * @return The value of the key as an integer, or the default if it is missing or invalid.
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = CONFIG.getProperty(key);
+        if (value == null) return defaultValue;
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
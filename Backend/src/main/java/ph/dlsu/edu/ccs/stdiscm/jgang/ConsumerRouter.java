@@ -0,0 +1,200 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConsumerRouter spreads uploads across several consumers. Each upload is
+ * routed either by consistent hashing on the filename, so that a file keeps
+ * going to the same consumer, or to the consumer with the fewest bytes still
+ * in flight. Consumers that fail are ejected until a health check finds them
+ * responsive again.
+ */
+public class ConsumerRouter {
+
+    public enum Strategy {
+        HASH, LEAST_BYTES
+    }
+
+    // Points per consumer on the hash ring, so load evens out when one is ejected
+    private static final int VIRTUAL_NODES = 100;
+
+    private final List<Endpoint> endpoints;
+    private final TreeMap<Integer, Endpoint> ring = new TreeMap<>();
+    private final Strategy strategy;
+
+    public ConsumerRouter(List<InetSocketAddress> addresses, Strategy strategy) {
+        this.strategy = strategy;
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (InetSocketAddress address : addresses) {
+            Endpoint endpoint = new Endpoint(address);
+            endpoints.add(endpoint);
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(endpoint + "#" + i), endpoint);
+            }
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Parses a comma-separated list of {@code host:port} pairs.
+     */
+    public static List<InetSocketAddress> parseEndpoints(String list) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String entry : list.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected host:port but got " + entry);
+            }
+            addresses.add(new InetSocketAddress(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Picks the consumer an upload should go to.
+     *
+     * @param filename The name of the file being uploaded.
+     * @param excluded Consumers that have already been tried for this upload.
+     * @return The chosen consumer, or null if no healthy consumer is left.
+     */
+    public Endpoint select(String filename, Set<Endpoint> excluded) {
+        if (strategy == Strategy.LEAST_BYTES) {
+            Endpoint best = null;
+            for (Endpoint endpoint : endpoints) {
+                if (!endpoint.healthy || excluded.contains(endpoint)) continue;
+                if (best == null || endpoint.outstandingBytes.get() < best.outstandingBytes.get()) {
+                    best = endpoint;
+                }
+            }
+            return best;
+        }
+
+        // Walk the ring clockwise from the file's position until a usable consumer is found
+        if (ring.isEmpty()) return null;
+        int start = hash(filename);
+        for (Endpoint endpoint : ring.tailMap(start).values()) {
+            if (endpoint.healthy && !excluded.contains(endpoint)) return endpoint;
+        }
+        for (Endpoint endpoint : ring.headMap(start).values()) {
+            if (endpoint.healthy && !excluded.contains(endpoint)) return endpoint;
+        }
+        return null;
+    }
+
+    /**
+     * Takes a consumer out of rotation until a health check succeeds.
+     */
+    public void eject(Endpoint endpoint, String reason) {
+        if (endpoint.healthy) {
+            endpoint.healthy = false;
+            Log.warn("Ejected consumer {}: {}", endpoint, reason);
+        }
+    }
+
+    /**
+     * Periodically pings every consumer, ejecting the ones that do not answer
+     * and re-admitting the ones that do.
+     *
+     * @param intervalMs How often to check each consumer.
+     * @param timeoutMs  How long to wait for a consumer to answer.
+     */
+    public void startHealthChecks(long intervalMs, int timeoutMs) {
+        ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "consumer-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        healthChecker.scheduleWithFixedDelay(() -> {
+            for (Endpoint endpoint : endpoints) {
+                try {
+                    ping(endpoint.address, timeoutMs);
+                    if (!endpoint.healthy) {
+                        endpoint.healthy = true;
+                        Log.info("Re-admitted consumer {}", endpoint);
+                    }
+                } catch (IOException e) {
+                    eject(endpoint, "health check failed (" + e.getMessage() + ")");
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void ping(InetSocketAddress address, int timeoutMs) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            socket.getOutputStream().write("ping\n".getBytes(StandardCharsets.UTF_8));
+
+            // A busy consumer is still healthy, it just cannot take more uploads right now
+            String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+            if (!"pong".equals(reply) && !"BUSY".equals(reply)) {
+                throw new IOException("unexpected reply " + reply);
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        // FNV-1a followed by a final mix, which spreads similar names far better than String.hashCode
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * A consumer uploads can be routed to.
+     */
+    public static final class Endpoint {
+        private final InetSocketAddress address;
+        private final AtomicLong outstandingBytes = new AtomicLong();
+        private volatile boolean healthy = true;
+
+        private Endpoint(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Records bytes that have started (positive) or finished (negative) uploading.
+         */
+        public void addOutstandingBytes(long bytes) {
+            outstandingBytes.addAndGet(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * DirectoryWatcher keeps the producer running and ships every video that
+ * appears in the video directory. A video is only shipped once its size and
+ * modification time have stayed the same for the settle time, so files that
+ * are still being recorded are left alone.
+ * <p>
+ * Directory events only mark files as candidates; the candidates are checked
+ * together once per tick, so a burst of new files is handed to the upload pool
+ * as a single batch rather than one wake-up per event.
+ */
+public class DirectoryWatcher {
+    private final Path directory;
+    private final ShipmentJournal journal;
+    private final ExecutorService uploadPool;
+    private final Predicate<File> uploader;
+    private final long settleMs;
+
+    private final Map<Path, Candidate> candidates = new HashMap<>();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final Queue<Path> retries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param directory  The directory to watch.
+     * @param journal    The record of videos that have already been shipped.
+     * @param uploadPool The threads that perform the uploads.
+     * @param uploader   Uploads a video, returning whether it was acknowledged.
+     * @param settleMs   How long a video must stay unchanged before it is shipped.
+     */
+    public DirectoryWatcher(Path directory, ShipmentJournal journal, ExecutorService uploadPool,
+                            Predicate<File> uploader, long settleMs) {
+        this.directory = directory;
+        this.journal = journal;
+        this.uploadPool = uploadPool;
+        this.uploader = uploader;
+        this.settleMs = settleMs;
+    }
+
+    /**
+     * Watches the directory until the thread is interrupted.
+     */
+    public void run() throws IOException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            // Pick up anything written while we were not running
+            rescan();
+
+            long tickMs = Math.max(100, settleMs / 4);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(tickMs, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescan(); // Events were lost, so look at everything
+                        } else {
+                            markChanged(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+
+                tick();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Requeues failed uploads and ships whatever has settled.
+     */
+    void tick() {
+        // Failed uploads go through the settle time again before being retried
+        Path retry;
+        while ((retry = retries.poll()) != null) {
+            markChanged(retry);
+        }
+
+        shipSettled();
+    }
+
+    /**
+     * Marks every file in the directory as a candidate.
+     */
+    void rescan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                markChanged(file);
+            }
+        }
+    }
+
+    private void markChanged(Path file) {
+        if (!Files.isRegularFile(file) || file.getFileName().toString().startsWith(".")) return;
+        candidates.put(file, new Candidate(file.toFile()));
+    }
+
+    /**
+     * Hands every candidate that has stopped changing to the upload pool.
+     */
+    private void shipSettled() {
+        long now = System.currentTimeMillis();
+        List<Candidate> batch = new ArrayList<>();
+
+        Iterator<Candidate> iterator = candidates.values().iterator();
+        while (iterator.hasNext()) {
+            Candidate candidate = iterator.next();
+            File file = candidate.file;
+            if (!file.isFile()) {
+                iterator.remove();
+                continue;
+            }
+
+            long size = file.length();
+            long lastModified = file.lastModified();
+            if (size != candidate.size || lastModified != candidate.lastModified) {
+                // Still being written
+                candidate.size = size;
+                candidate.lastModified = lastModified;
+                candidate.lastChange = now;
+            } else if (now - candidate.lastChange >= settleMs && !inFlight.contains(file.toPath())) {
+                iterator.remove();
+                if (!journal.isShipped(file.getName(), size, lastModified)) {
+                    batch.add(candidate);
+                }
+            }
+        }
+
+        if (batch.isEmpty()) return;
+
+        // Send the smallest videos first so a burst of short clips is not stuck behind a long one
+        batch.sort(Comparator.comparingLong(candidate -> candidate.size));
+        Log.info("Shipping {} settled video(s)", batch.size());
+        for (Candidate candidate : batch) {
+            inFlight.add(candidate.file.toPath());
+            uploadPool.submit(() -> ship(candidate));
+        }
+    }
+
+    private void ship(Candidate candidate) {
+        File file = candidate.file;
+        try {
+            if (uploader.test(file)) {
+                journal.record(file.getName(), candidate.size, candidate.lastModified);
+            } else {
+                retries.add(file.toPath());
+            }
+        } catch (IOException e) {
+            Log.error("Unable to journal {}: {}", file.getName(), e.getMessage());
+        } finally {
+            inFlight.remove(file.toPath());
+        }
+    }
+
+    /**
+     * A file that may need shipping, along with the last size and modification
+     * time it was seen with.
+     */
+    private static final class Candidate {
+        private final File file;
+        private long size = -1;
+        private long lastModified = -1;
+        private long lastChange;
+
+        private Candidate(File file) {
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashedWheelTimer runs many short timeouts on a single thread. Timeouts are
+ * hashed into the slots of a wheel by their deadline, and the thread visits one
+ * slot per tick, so scheduling and cancelling cost the same no matter how many
+ * timeouts are pending. Deadlines are only as precise as the tick duration,
+ * which is plenty for connection deadlines measured in seconds.
+ * <p>
+ * Tasks run on the timer thread and must be quick.
+ */
+public class HashedWheelTimer {
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+    private long tick;
+
+    /**
+     * @param name         The name of the timer thread.
+     * @param tickDuration How long each tick lasts.
+     * @param unit         The unit of the tick duration.
+     * @param wheelSize    The number of slots, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickNanos = unit.toNanos(tickDuration);
+
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = (List<Timeout>[]) new List<?>[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+
+        Thread worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs the task once the delay has passed, unless it is cancelled first.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            // Sleep until the start of the next tick
+            long sleepNanos = startTime + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            placeNewTimeouts();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void placeNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.cancelled) continue;
+
+            long deadlineTick = (timeout.deadline - startTime + tickNanos - 1) / tickNanos;
+            timeout.rounds = Math.max(0, (deadlineTick - tick) / wheel.length);
+            // Timeouts that are already due go into the current slot
+            long slotTick = Math.max(deadlineTick, tick);
+            wheel[(int) (slotTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> slot) {
+        Iterator<Timeout> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    Log.error("Error in timer task: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A scheduled task that can be cancelled before it runs.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Log is the Backend's logger. Logging threads never wait on the console or
+ * a file: a message is copied into a preallocated slot of a lock-free ring
+ * buffer and a single background thread formats and writes it later.
+ * <p>
+ * Messages are templates with {@code {}} placeholders, so nothing is
+ * concatenated on the calling thread. Arguments are formatted later on the
+ * writer thread, so pass a String for anything that may change in the
+ * meantime, such as a channel that is about to be closed.
+ * <p>
+ * Identical messages are limited to a number per second, and the writer
+ * reports how many repeats it dropped. When the ring buffer is full, messages
+ * are dropped and counted rather than holding up the caller.
+ */
+public final class Log {
+    public enum Level {DEBUG, INFO, WARN, ERROR}
+
+    private static final int RING_SIZE = 8192; // Must be a power of two
+    private static final int FLUSH_BATCH = 256;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final Ring ring = new Ring(RING_SIZE);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final RateLimiter rateLimiter = new RateLimiter(); // Only used by the writer thread
+    private static final Thread writer;
+
+    private static volatile Level threshold = Level.INFO;
+    private static volatile int perSecondLimit = 50;
+    private static volatile BufferedWriter fileSink;
+    private static volatile boolean sleeping;
+    private static volatile boolean running = true;
+
+    static {
+        writer = new Thread(Log::runWriter, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::shutdown, "log-shutdown"));
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Reads {@code log.level}, {@code log.file} and {@code log.rate_limit}
+     * from a configuration. Messages are also appended to the file when one is
+     * given.
+     */
+    public static void configure(Function<String, String> config) {
+        String level = config.apply("log.level");
+        if (level != null) {
+            try {
+                threshold = Level.valueOf(level.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                warn("Unknown log level {}, keeping {}", level, threshold);
+            }
+        }
+
+        String rateLimit = config.apply("log.rate_limit");
+        if (rateLimit != null) {
+            try {
+                perSecondLimit = Integer.parseInt(rateLimit.trim());
+            } catch (NumberFormatException e) {
+                warn("Invalid log.rate_limit {}, keeping {}", rateLimit, perSecondLimit);
+            }
+        }
+
+        String file = config.apply("log.file");
+        if (file != null && !file.isBlank()) {
+            try {
+                fileSink = Files.newBufferedWriter(Path.of(file.trim()), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                warn("Unable to open log file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    public static void debug(String template, Object arg0) {
+        log(Level.DEBUG, template, arg0, null, null, 1);
+    }
+
+    public static void info(String template) {
+        log(Level.INFO, template, null, null, null, 0);
+    }
+
+    public static void info(String template, Object arg0) {
+        log(Level.INFO, template, arg0, null, null, 1);
+    }
+
+    public static void info(String template, Object arg0, Object arg1) {
+        log(Level.INFO, template, arg0, arg1, null, 2);
+    }
+
+    public static void info(String template, Object arg0, Object arg1, Object arg2) {
+        log(Level.INFO, template, arg0, arg1, arg2, 3);
+    }
+
+    public static void warn(String template) {
+        log(Level.WARN, template, null, null, null, 0);
+    }
+
+    public static void warn(String template, Object arg0) {
+        log(Level.WARN, template, arg0, null, null, 1);
+    }
+
+    public static void warn(String template, Object arg0, Object arg1) {
+        log(Level.WARN, template, arg0, arg1, null, 2);
+    }
+
+    public static void warn(String template, Object arg0, Object arg1, Object arg2) {
+        log(Level.WARN, template, arg0, arg1, arg2, 3);
+    }
+
+    public static void error(String template) {
+        log(Level.ERROR, template, null, null, null, 0);
+    }
+
+    /**
+     * A Throwable passed after the last placeholder is written with its stack trace.
+     */
+    public static void error(String template, Object arg0) {
+        log(Level.ERROR, template, arg0, null, null, 1);
+    }
+
+    public static void error(String template, Object arg0, Object arg1) {
+        log(Level.ERROR, template, arg0, arg1, null, 2);
+    }
+
+    public static void error(String template, Object arg0, Object arg1, Object arg2) {
+        log(Level.ERROR, template, arg0, arg1, arg2, 3);
+    }
+
+    /**
+     * Writes out every message logged so far and stops the writer thread.
+     */
+    public static void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void log(Level level, String template, Object arg0, Object arg1, Object arg2, int argCount) {
+        if (!isEnabled(level)) return;
+
+        if (!ring.offer(level, System.currentTimeMillis(), Thread.currentThread().getName(),
+                template, arg0, arg1, arg2, argCount)) {
+            dropped.incrementAndGet(); // The writer is behind; never wait for it
+            return;
+        }
+
+        if (sleeping) LockSupport.unpark(writer);
+    }
+
+    private static void runWriter() {
+        StringBuilder line = new StringBuilder(256);
+        StringBuilder message = new StringBuilder(256);
+        long lastSweep = System.currentTimeMillis();
+        int unflushed = 0;
+
+        while (true) {
+            Event event = ring.peek();
+            if (event != null) {
+                write(event, line, message);
+                ring.release(); // Hand the slot back to the loggers
+
+                // Flush in batches while busy rather than once per message
+                if (++unflushed >= FLUSH_BATCH) {
+                    flush();
+                    unflushed = 0;
+
+                    // Keep sweeping under sustained load so the rate limiter forgets old messages
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+                        reportSuppressed(line);
+                        lastSweep = now;
+                    }
+                }
+                continue;
+            }
+
+            // The ring is empty
+            if (unflushed > 0) {
+                flush();
+                unflushed = 0;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+                reportSuppressed(line);
+                lastSweep = now;
+                continue;
+            }
+
+            if (!running) {
+                reportSuppressed(line);
+                flush();
+                return;
+            }
+
+            sleeping = true;
+            if (ring.peek() == null) {
+                LockSupport.parkNanos(SWEEP_INTERVAL_MS * 1_000_000);
+            }
+            sleeping = false;
+        }
+    }
+
+    private static void write(Event event, StringBuilder line, StringBuilder message) {
+        // Fill in the placeholders
+        message.setLength(0);
+        String template = event.template;
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < event.argCount && (placeholder = template.indexOf("{}", start)) >= 0) {
+            message.append(template, start, placeholder).append(event.arg(argIndex++));
+            start = placeholder + 2;
+        }
+        message.append(template, start, template.length());
+
+        int limit = perSecondLimit;
+        if (limit > 0 && !rateLimiter.allow(message.toString(), event.timestamp, limit)) return;
+
+        startLine(line, event.level, event.timestamp, event.thread);
+        line.append(message);
+        Object last = argIndex < event.argCount ? event.arg(argIndex) : null;
+        writeLine(event.level, line, last instanceof Throwable ? (Throwable) last : null);
+    }
+
+    private static void startLine(StringBuilder line, Level level, long timestamp, String thread) {
+        line.setLength(0);
+        line.append(TIMESTAMP.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())))
+                .append(' ').append(level);
+        if (level.name().length() == 4) line.append(' '); // Line up INFO and WARN with the rest
+        line.append(" [").append(thread).append("] ");
+    }
+
+    private static void writeLine(Level level, CharSequence line, Throwable throwable) {
+        PrintStream console = level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+        console.println(line);
+        if (throwable != null) throwable.printStackTrace(console);
+
+        BufferedWriter file = fileSink;
+        if (file == null) return;
+        try {
+            file.append(line).append(System.lineSeparator());
+            if (throwable != null) {
+                // The whole trace, with the exception itself and every cause, as on the console
+                StringWriter trace = new StringWriter();
+                throwable.printStackTrace(new PrintWriter(trace));
+                file.append(trace.toString());
+            }
+        } catch (IOException e) {
+            fileSink = null;
+            System.err.println("Log file failed, logging to the console only: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reports the messages dropped by the rate limits and the full ring buffer.
+     */
+    private static void reportSuppressed(StringBuilder line) {
+        long now = System.currentTimeMillis();
+        rateLimiter.sweep(now, (message, suppressed) -> {
+            startLine(line, Level.WARN, now, writer.getName());
+            line.append("Suppressed ").append(suppressed).append(" repeat(s) of: ").append(message);
+            writeLine(Level.WARN, line, null);
+        });
+
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            startLine(line, Level.WARN, System.currentTimeMillis(), writer.getName());
+            line.append("Dropped ").append(lost).append(" log message(s) because the log buffer was full");
+            writeLine(Level.WARN, line, null);
+        }
+    }
+
+    private static void flush() {
+        System.out.flush();
+        BufferedWriter file = fileSink;
+        if (file == null) return;
+        try {
+            file.flush();
+        } catch (IOException e) {
+            fileSink = null;
+            System.err.println("Log file failed, logging to the console only: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A bounded queue of preallocated events with many writers and a single
+     * reader, in the style of Vyukov's bounded queue. Each slot carries a
+     * sequence number that says whether it is free for the writer claiming
+     * that position or holds an event published for the reader.
+     */
+    static final class Ring {
+        private final Event[] slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head; // Only used by the reader
+
+        /**
+         * @param size The number of slots, which must be a power of two.
+         */
+        Ring(int size) {
+            if (Integer.bitCount(size) != 1) {
+                throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+            }
+            slots = new Event[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Event(i);
+            }
+            mask = size - 1;
+        }
+
+        /**
+         * Copies an event into the next free slot without ever waiting.
+         *
+         * @return Whether there was room for it.
+         */
+        boolean offer(Level level, long timestamp, String thread, String template,
+                      Object arg0, Object arg1, Object arg2, int argCount) {
+            Event event;
+            long position;
+            while (true) {
+                position = tail.get();
+                event = slots[(int) (position & mask)];
+                long difference = event.sequence - position;
+                if (difference < 0) return false; // The reader has not freed this slot yet
+                if (difference == 0 && tail.compareAndSet(position, position + 1)) break;
+            }
+
+            event.level = level;
+            event.timestamp = timestamp;
+            event.thread = thread;
+            event.template = template;
+            event.arg0 = arg0;
+            event.arg1 = arg1;
+            event.arg2 = arg2;
+            event.argCount = argCount;
+            event.sequence = position + 1; // Publish
+            return true;
+        }
+
+        /**
+         * @return The oldest published event, or null if there is none. It
+         * stays in the ring until {@link #release()} is called.
+         */
+        Event peek() {
+            Event event = slots[(int) (head & mask)];
+            return event.sequence == head + 1 ? event : null;
+        }
+
+        /**
+         * Frees the slot of the event returned by {@link #peek()}.
+         */
+        void release() {
+            Event event = slots[(int) (head & mask)];
+            event.clear();
+            event.sequence = head + slots.length;
+            head++;
+        }
+    }
+
+    /**
+     * A preallocated slot in the ring buffer.
+     */
+    static final class Event {
+        private volatile long sequence;
+        Level level;
+        long timestamp;
+        String thread;
+        String template;
+        Object arg0;
+        Object arg1;
+        Object arg2;
+        int argCount;
+
+        private Event(long sequence) {
+            this.sequence = sequence;
+        }
+
+        Object arg(int index) {
+            return index == 0 ? arg0 : index == 1 ? arg1 : arg2;
+        }
+
+        private void clear() {
+            thread = null;
+            template = null;
+            arg0 = null;
+            arg1 = null;
+            arg2 = null;
+        }
+    }
+
+    /**
+     * Limits how often the very same message is written. Messages that differ
+     * in any argument, such as the name of each received video, are counted
+     * separately. Not thread-safe; only the writer thread uses it.
+     */
+    static final class RateLimiter {
+        private final Map<String, Window> windows = new HashMap<>();
+
+        /**
+         * @return Whether the message fits in the limit for the current second.
+         */
+        boolean allow(String message, long now, int perSecond) {
+            Window window = windows.get(message);
+            if (window == null) {
+                window = new Window(now);
+                windows.put(message, window);
+            } else if (now - window.start >= 1000) {
+                window.start = now;
+                window.count = 0;
+            }
+
+            if (++window.count <= perSecond) return true;
+            window.suppressed++;
+            return false;
+        }
+
+        /**
+         * Reports every message that had repeats suppressed, and forgets
+         * messages whose second is over so that only recent ones are kept.
+         */
+        void sweep(long now, BiConsumer<String, Long> reporter) {
+            Iterator<Map.Entry<String, Window>> iterator = windows.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Window> entry = iterator.next();
+                Window window = entry.getValue();
+                if (window.suppressed > 0) {
+                    reporter.accept(entry.getKey(), window.suppressed);
+                    window.suppressed = 0;
+                }
+                if (now - window.start >= 1000) iterator.remove();
+            }
+        }
+
+        int size() {
+            return windows.size();
+        }
+
+        private static final class Window {
+            private long start;
+            private int count;
+            private long suppressed;
+
+            private Window(long start) {
+                this.start = start;
+            }
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package ph.dlsu.edu.ccs.stdiscm.jgang;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Producer is responsible for uploading files to the consumer. It reads
@@ -15,29 +29,56 @@ import java.nio.file.StandardOpenOption;
  * a network socket using NIO socket channels.
  */
 public class Producer {
+    // How many times to go through every consumer before giving up on a file
+    private static final int MAX_ROUNDS = 5;
+    private static final long BUSY_BACKOFF_MS = 1000;
+    private static final int HEALTH_CHECK_TIMEOUT_MS = 1000;
+
+    private static ConsumerRouter router;
+    // Persistent connections per consumer, or 0 to open a new connection for every video
+    private static int connectionsPerConsumer;
+    private static final Map<ConsumerRouter.Endpoint, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+
     private Producer() {
     }
 
     public static void main(String[] args) {
         if (!ProducerConfig.init()) {
-            System.err.println("Failed to initialize Producer configuration.");
+            Log.error("Failed to initialize Producer configuration.");
             return;
         }
+        Log.configure(ProducerConfig::get);
 
         int numProducers;
         try {
             numProducers = Integer.parseInt(ProducerConfig.get("threads"));
         } catch (NumberFormatException e) {
-            System.err.println("Invalid number of producers specified. Defaulting to 1.");
+            Log.warn("Invalid number of producers specified. Defaulting to 1.");
             numProducers = 1;
         }
 
+        router = createRouter();
+        if (router == null) return;
+        Log.info("Uploading to consumers {}", router.getEndpoints());
+
+        try {
+            connectionsPerConsumer = Integer.parseInt(ProducerConfig.get("server.connections"));
+        } catch (NumberFormatException e) {
+            connectionsPerConsumer = 0;
+        }
+
         // Define the folder where video files are stored
         File folder = new File(ProducerConfig.get("video_directory"));
+
+        if ("watch".equalsIgnoreCase(ProducerConfig.get("mode"))) {
+            watchAndShip(folder, numProducers);
+            return;
+        }
+
         File[] videoFiles = folder.listFiles();
 
         if (videoFiles == null || videoFiles.length == 0) {
-            System.out.println("No video files found in " + ProducerConfig.get("video_directory") + " folder.");
+            Log.info("No video files found in {} folder.", ProducerConfig.get("video_directory"));
             return;
         }
 
@@ -49,24 +90,163 @@ public class Producer {
     }
 
     /**
-     * Sends the video file to the consumer over a socket channel connection.
+     * Runs until stopped, shipping every video that settles in the folder
+     * through a fixed pool of upload threads.
      *
-     * @param videoFile The video file to send.
+     * @param folder      The folder to watch.
+     * @param uploadCount The number of uploads to run at once.
      */
-    private static void sendVideoToConsumer(File videoFile) {
-        int port;
+    private static void watchAndShip(File folder, int uploadCount) {
+        long settleMs;
         try {
-            port = Integer.parseInt(ProducerConfig.get("server.port"));
+            settleMs = Long.parseLong(ProducerConfig.get("watch.settle_ms"));
         } catch (NumberFormatException e) {
-            System.err.println("Invalid port number in configuration: " + e.getMessage());
+            settleMs = 2000;
+        }
+        String journalPath = ProducerConfig.get("watch.journal");
+        if (journalPath == null || journalPath.isBlank()) journalPath = "producer.journal";
+
+        ShipmentJournal journal;
+        try {
+            journal = new ShipmentJournal(Path.of(journalPath));
+        } catch (IOException e) {
+            Log.error("Unable to open shipment journal {}: {}", journalPath, e.getMessage());
             return;
         }
+        Log.info("Watching {} ({} video(s) already shipped)", folder, journal.size());
+
+        ExecutorService uploadPool = Executors.newFixedThreadPool(uploadCount);
+        try {
+            new DirectoryWatcher(folder.toPath(), journal, uploadPool, Producer::sendVideoToConsumer, settleMs).run();
+        } catch (IOException e) {
+            Log.error("Error while watching {}: {}", folder, e.getMessage());
+        } finally {
+            uploadPool.shutdown();
+        }
+    }
+
+    /**
+     * Builds the router from either the {@code server.endpoints} list or the
+     * single {@code server.ip_addr} and {@code server.port} consumer.
+     *
+     * @return The router, or null if the configuration is invalid.
+     */
+    private static ConsumerRouter createRouter() {
+        List<InetSocketAddress> addresses;
+        try {
+            String endpoints = ProducerConfig.get("server.endpoints");
+            if (endpoints != null && !endpoints.isBlank()) {
+                addresses = ConsumerRouter.parseEndpoints(endpoints);
+            } else {
+                addresses = List.of(new InetSocketAddress(ProducerConfig.get("server.ip_addr"),
+                        Integer.parseInt(ProducerConfig.get("server.port"))));
+            }
+        } catch (IllegalArgumentException e) {
+            Log.error("Invalid consumer endpoints in configuration: {}", e.getMessage());
+            return null;
+        }
+
+        ConsumerRouter.Strategy strategy = "least_bytes".equalsIgnoreCase(ProducerConfig.get("balance"))
+                ? ConsumerRouter.Strategy.LEAST_BYTES
+                : ConsumerRouter.Strategy.HASH;
+
+        long healthCheckMs;
+        try {
+            healthCheckMs = Long.parseLong(ProducerConfig.get("health_check_ms"));
+        } catch (NumberFormatException e) {
+            healthCheckMs = 2000;
+        }
 
-        try (
-                SocketChannel socketChannel = SocketChannel.open(
-                        new InetSocketAddress(ProducerConfig.get("server.ip_addr"), port));
-                FileChannel fileChannel = FileChannel.open(videoFile.toPath(), StandardOpenOption.READ)
-        ) {
+        ConsumerRouter router = new ConsumerRouter(addresses, strategy);
+        router.startHealthChecks(healthCheckMs, HEALTH_CHECK_TIMEOUT_MS);
+        return router;
+    }
+
+    /**
+     * Sends the video file to one of the consumers, moving on to another
+     * consumer whenever one is busy or cannot be reached.
+     *
+     * @param videoFile The video file to send.
+     * @return Whether a consumer acknowledged the video.
+     */
+    private static boolean sendVideoToConsumer(File videoFile) {
+        long fileSize = videoFile.length();
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Set<ConsumerRouter.Endpoint> tried = new HashSet<>();
+            ConsumerRouter.Endpoint endpoint;
+            while ((endpoint = router.select(videoFile.getName(), tried)) != null) {
+                tried.add(endpoint);
+
+                endpoint.addOutstandingBytes(fileSize);
+                try {
+                    String reply = upload(endpoint, videoFile);
+                    if ("BUSY".equals(reply)) {
+                        Log.warn("Consumer {} is busy, rerouting: {}", endpoint, videoFile.getName());
+                        continue;
+                    }
+                    if (reply == null) {
+                        throw new IOException("connection closed before acknowledgement");
+                    }
+
+                    Log.info("Uploaded: {} to {}", videoFile.getName(), endpoint);
+                    return true;
+                } catch (ConnectException e) {
+                    router.eject(endpoint, e.getMessage());
+                } catch (IOException e) {
+                    // A busy consumer may reset the connection mid-upload, so leave ejection to the health checks
+                    Log.warn("Error while uploading {} to {}: {}", videoFile.getName(), endpoint, e.getMessage());
+                } finally {
+                    endpoint.addOutstandingBytes(-fileSize);
+                }
+            }
+
+            // Every consumer is busy or down; give them a moment before trying again
+            try {
+                Thread.sleep(BUSY_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        Log.error("Giving up on {}: no consumer accepted it", videoFile.getName());
+        return false;
+    }
+
+    /**
+     * Uploads the video to the given consumer, over a pooled connection if
+     * persistent connections are enabled.
+     *
+     * @return The consumer's reply, or null if it closed the connection without one.
+     */
+    private static String upload(ConsumerRouter.Endpoint endpoint, File videoFile) throws IOException {
+        if (connectionsPerConsumer <= 0) {
+            try (SocketChannel socketChannel = SocketChannel.open(endpoint.getAddress())) {
+                return sendVideo(socketChannel, videoFile);
+            }
+        }
+
+        ConnectionPool pool = connectionPools.computeIfAbsent(endpoint,
+                consumer -> new ConnectionPool(consumer.getAddress(), connectionsPerConsumer));
+        try {
+            return pool.send(videoFile).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for acknowledgement");
+        }
+    }
+
+    /**
+     * Sends the video over a new connection, ending the video by closing our
+     * side of the connection, and waits for the consumer's reply.
+     *
+     * @return The consumer's reply, or null if it closed the connection without one.
+     */
+    static String sendVideo(SocketChannel socketChannel, File videoFile) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(videoFile.toPath(), StandardOpenOption.READ)) {
             // Send the filename first
             String header = "fileput:" + videoFile.getName() + "\n";
             ByteBuffer filenameBuffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
@@ -85,11 +265,10 @@ public class Producer {
                 }
                 position += bytesTransferred;
             }
-
-            System.out.println("Uploaded: " + videoFile.getName());
-        } catch (IOException e) {
-            System.err.println("Error while uploading: " + videoFile.getName());
-            e.printStackTrace();
         }
+
+        // Mark the end of the file, then wait for the consumer to acknowledge it
+        socketChannel.shutdownOutput();
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(socketChannel), StandardCharsets.UTF_8)).readLine();
     }
 }
\ No newline at end of file
@@ -14,7 +14,7 @@ public class ProducerConfig {
         try {
             InputStream inputStream = ProducerConfig.class.getClassLoader().getResourceAsStream("producer.properties");
             if (inputStream == null) {
-                System.err.println("Error: producer.properties not found in classpath");
+                Log.error("Error: producer.properties not found in classpath");
                 return false;
             }
 
@@ -22,7 +22,7 @@ public class ProducerConfig {
             initialized = true;
             return true;
         } catch (IOException e) {
-            System.err.println("Error loading configuration: " + e.getMessage());
+            Log.error("Error loading configuration: {}", e.getMessage());
             return false;
         }
     }
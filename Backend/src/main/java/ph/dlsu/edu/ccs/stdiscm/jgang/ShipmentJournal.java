@@ -0,0 +1,62 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ShipmentJournal remembers which videos have already been uploaded so that a
+ * restarted producer does not send them again. Each line of the journal holds
+ * a video's name, size and last-modified time, so a video that is replaced by
+ * a different file of the same name is shipped again.
+ */
+public class ShipmentJournal {
+    private final Map<String, String> shipped = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    public ShipmentJournal(Path path) throws IOException {
+        if (Files.exists(path)) {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    // Later entries win, since a video may have been shipped more than once
+                    shipped.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+            }
+        }
+
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    public int size() {
+        return shipped.size();
+    }
+
+    public boolean isShipped(String name, long size, long lastModified) {
+        return version(size, lastModified).equals(shipped.get(name));
+    }
+
+    /**
+     * Records a video as shipped. The entry is flushed right away so it
+     * survives the producer being stopped.
+     */
+    public synchronized void record(String name, long size, long lastModified) throws IOException {
+        String version = version(size, lastModified);
+        writer.write(name + "\t" + version);
+        writer.newLine();
+        writer.flush();
+        shipped.put(name, version);
+    }
+
+    private static String version(long size, long lastModified) {
+        return size + "\t" + lastModified;
+    }
+}
@@ -0,0 +1,104 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UploadBenchmark measures how many small videos per second reach a running
+ * consumer when every video gets its own connection, compared with sending
+ * them over a pool of persistent, pipelined connections.
+ * <p>
+ * Usage: {@code UploadBenchmark [host:port] [videos] [videoBytes] [threads] [connections]}
+ * <p>
+ * The consumer's queue_size should be at least the number of threads, or
+ * videos will be turned away as BUSY and counted as failures.
+ */
+public class UploadBenchmark {
+    private UploadBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        InetSocketAddress consumer = ConsumerRouter.parseEndpoints(args.length > 0 ? args[0] : "127.0.0.1:3005").get(0);
+        int videoCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int videoBytes = args.length > 2 ? Integer.parseInt(args[2]) : 16 * 1024;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int connections = args.length > 4 ? Integer.parseInt(args[4]) : threads;
+
+        // Generate the clips once so both runs send identical data
+        Path folder = Files.createTempDirectory("upload-benchmark");
+        List<File> videos = new ArrayList<>();
+        byte[] data = new byte[videoBytes];
+        new Random(42).nextBytes(data);
+        for (int i = 0; i < videoCount; i++) {
+            Path video = folder.resolve("bench-" + i + ".mp4");
+            Files.write(video, data);
+            videos.add(video.toFile());
+        }
+
+        System.out.println("Sending " + videoCount + " videos of " + videoBytes + " bytes to " + consumer
+                + " with " + threads + " threads");
+
+        run("One connection per video", videos, threads, video -> {
+            try (SocketChannel socketChannel = SocketChannel.open(consumer)) {
+                return Producer.sendVideo(socketChannel, video);
+            }
+        });
+
+        ConnectionPool pool = new ConnectionPool(consumer, connections);
+        try {
+            run(connections + " persistent connection(s)", videos, threads, video -> {
+                try {
+                    return pool.send(video).get();
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+            });
+        } finally {
+            pool.close();
+        }
+
+        for (File video : videos) {
+            Files.deleteIfExists(video.toPath());
+        }
+        Files.deleteIfExists(folder);
+    }
+
+    private interface Upload {
+        String send(File video) throws IOException, InterruptedException;
+    }
+
+    private static void run(String name, List<File> videos, int threads, Upload upload) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(videos.size());
+
+        long start = System.nanoTime();
+        for (File video : videos) {
+            pool.submit(() -> {
+                try {
+                    String reply = upload.send(video);
+                    if (reply == null || !reply.startsWith("Received")) failures.incrementAndGet();
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%-28s %8.1f videos/s (%d failed, %.2f s)%n",
+                name + ":", videos.size() / seconds, failures.get(), seconds);
+    }
+}
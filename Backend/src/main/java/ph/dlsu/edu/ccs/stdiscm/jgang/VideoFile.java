@@ -8,6 +8,7 @@ public class VideoFile {
     private final String header;
     private final SocketChannel clientChannel;
     private final ByteBuffer leftoverBuffer;
+    private final long queuedAt = System.nanoTime();
 
     public VideoFile(String header, SocketChannel clientChannel, ByteBuffer leftoverBuffer) {
         this.header = header;
@@ -27,6 +28,13 @@ public class VideoFile {
         return leftoverBuffer;
     }
 
+    /**
+     * @return When the video was received, as a {@link System#nanoTime()} value.
+     */
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
     public void close() throws IOException {
         clientChannel.close();
     }
@@ -0,0 +1,556 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * VideoHttpServer serves stored videos over HTTP so that viewers do not have to
+ * share a filesystem with the consumer. A single selector thread serves every
+ * viewer, and file data is sent with {@link FileChannel#transferTo} so it never
+ * passes through the heap.
+ * <p>
+ * {@code GET /videos/} lists the complete videos, one name per line.
+ * {@code GET /videos/<name>} serves a video and honours single {@code Range}
+ * requests for seeking. A video that is still being received can be played as
+ * well: without a range, the response follows the file as it grows, in chunks
+ * for HTTP/1.1 viewers. It ends normally once the upload is committed, and the
+ * connection is reset if the upload fails so a truncated video is never
+ * mistaken for a complete one.
+ * <p>
+ * {@code GET /status/<page>} shows plain-text status pages registered by other
+ * parts of the consumer.
+ */
+public class VideoHttpServer {
+    private static final String VIDEOS_PATH = "/videos/";
+    private static final String STATUS_PATH = "/status/";
+    private static final int MAX_HEADER_SIZE = 8192;
+    private static final long FOLLOW_POLL_MS = 200;
+    private static final long FOLLOW_IDLE_MS = 30_000; // Give up on uploads that stop arriving
+
+    static final long[] UNSATISFIABLE = new long[0];
+
+    private static final List<Connection> followers = new ArrayList<>();
+    private static final Map<String, Supplier<String>> statusPages = new ConcurrentHashMap<>();
+    private static Path videoDirectory;
+
+    private VideoHttpServer() {
+    }
+
+    /**
+     * Starts serving the given directory on the given port.
+     *
+     * @param port      The port viewers connect to.
+     * @param directory The directory the videos are stored in.
+     */
+    public static void start(int port, Path directory) throws IOException {
+        videoDirectory = directory;
+
+        Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        Thread serverThread = new Thread(() -> {
+            while (selector.isOpen()) {
+                try {
+                    // Wake up periodically to check on videos that are still growing
+                    selector.select(FOLLOW_POLL_MS);
+
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+
+                        if (!key.isValid()) continue;
+
+                        if (key.isAcceptable()) {
+                            SocketChannel clientChannel = serverChannel.accept();
+                            if (clientChannel == null) continue;
+                            clientChannel.configureBlocking(false);
+                            SelectionKey clientKey = clientChannel.register(selector, SelectionKey.OP_READ);
+                            clientKey.attach(new Connection(clientKey, clientChannel));
+                            continue;
+                        }
+
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                handleRead(connection);
+                            } else if (key.isWritable()) {
+                                handleWrite(connection);
+                            }
+                        } catch (IOException e) {
+                            // Viewers routinely disconnect mid-transfer, e.g. when seeking
+                            connection.close();
+                        } catch (RuntimeException e) {
+                            // Only this viewer is affected; the thread keeps serving everyone else
+                            Log.warn("Error serving {}: {}", Consumer.describe(connection.channel), e.toString());
+                            connection.close();
+                        }
+                    }
+
+                    pollFollowers();
+                } catch (IOException e) {
+                    Log.warn("Video HTTP server error: {}", e.getMessage());
+                }
+            }
+        }, "video-http");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    /**
+     * Makes a plain-text status page available at {@code /status/<name>}.
+     */
+    public static void addStatusPage(String name, Supplier<String> page) {
+        statusPages.put(name, page);
+    }
+
+    private static void handleRead(Connection connection) throws IOException {
+        if (connection.channel.read(connection.requestBuffer) == -1) {
+            connection.close();
+            return;
+        }
+        processRequest(connection);
+    }
+
+    /**
+     * Starts responding to the next buffered request, if a complete one has arrived.
+     */
+    private static void processRequest(Connection connection) throws IOException {
+        ByteBuffer requestBuffer = connection.requestBuffer;
+        int headerEnd = indexOfHeaderEnd(requestBuffer);
+        if (headerEnd == -1) {
+            if (!requestBuffer.hasRemaining()) {
+                connection.keepAlive = false;
+                sendText(connection, 431, "Request Header Fields Too Large", "Request header too large\n", false);
+            }
+            return;
+        }
+
+        // Take the request head out of the buffer, keeping anything pipelined after it
+        requestBuffer.flip();
+        byte[] head = new byte[headerEnd];
+        requestBuffer.get(head);
+        requestBuffer.position(requestBuffer.position() + 4);
+        requestBuffer.compact();
+
+        String[] lines = new String(head, StandardCharsets.ISO_8859_1).split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3) {
+            connection.keepAlive = false;
+            sendText(connection, 400, "Bad Request", "Malformed request line\n", false);
+            return;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+            }
+        }
+
+        String method = requestLine[0];
+        String version = requestLine[2];
+        String connectionHeader = headers.getOrDefault("connection", "");
+        connection.http11 = version.equals("HTTP/1.1");
+        connection.keepAlive = connection.http11
+                ? !connectionHeader.equalsIgnoreCase("close")
+                : connectionHeader.equalsIgnoreCase("keep-alive");
+
+        boolean headOnly = method.equals("HEAD");
+        if (!headOnly && !method.equals("GET")) {
+            sendText(connection, 405, "Method Not Allowed", "Only GET and HEAD are supported\n", false);
+            return;
+        }
+
+        String path;
+        try {
+            path = URI.create(requestLine[1]).getPath();
+        } catch (IllegalArgumentException e) {
+            path = null;
+        }
+        if (path == null) {
+            // Opaque targets such as "a:b" have no path
+            sendText(connection, 400, "Bad Request", "Malformed request target\n", headOnly);
+            return;
+        }
+
+        if (path.equals("/videos") || path.equals(VIDEOS_PATH)) {
+            sendText(connection, 200, "OK", listVideos(), headOnly);
+        } else if (path.startsWith(VIDEOS_PATH)) {
+            serveVideo(connection, path.substring(VIDEOS_PATH.length()), headers.get("range"), headOnly);
+        } else if (path.startsWith(STATUS_PATH) && statusPages.containsKey(path.substring(STATUS_PATH.length()))) {
+            sendText(connection, 200, "OK", statusPages.get(path.substring(STATUS_PATH.length())).get(), headOnly);
+        } else {
+            sendText(connection, 404, "Not Found", "Not found\n", headOnly);
+        }
+    }
+
+    private static String listVideos() throws IOException {
+        StringBuilder listing = new StringBuilder();
+        try (Stream<Path> files = Files.list(videoDirectory)) {
+            files.filter(Files::isRegularFile)
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> !name.endsWith(Consumer.PARTIAL_SUFFIX))
+                    .sorted()
+                    .forEach(name -> listing.append(name).append('\n'));
+        }
+        return listing.toString();
+    }
+
+    private static void serveVideo(Connection connection, String name, String range, boolean headOnly) throws IOException {
+        // Only plain file names may be requested, never paths outside the video directory
+        if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.equals("..")
+                || name.endsWith(Consumer.PARTIAL_SUFFIX)) {
+            sendText(connection, 404, "Not Found", "Not found\n", headOnly);
+            return;
+        }
+
+        Path videoPath = videoDirectory.resolve(name);
+        Path partialPath = null;
+        FileChannel file;
+        boolean complete;
+        try {
+            file = FileChannel.open(videoPath, StandardOpenOption.READ);
+            complete = true;
+        } catch (IOException e) {
+            try {
+                partialPath = findPartialFile(name);
+                if (partialPath == null) throw new NoSuchFileException(name);
+                file = FileChannel.open(partialPath, StandardOpenOption.READ);
+                complete = false;
+            } catch (IOException notReceiving) {
+                sendText(connection, 404, "Not Found", "Not found\n", headOnly);
+                return;
+            }
+        }
+
+        long available = file.size();
+        String contentType = URLConnection.guessContentTypeFromName(name);
+        if (contentType == null) contentType = "application/octet-stream";
+
+        StringBuilder head = new StringBuilder();
+        long start;
+        long end; // Exclusive; grows while following a video that is still being received
+        boolean following = false;
+
+        long[] byteRange = range == null ? null : parseRange(range, available);
+        if (byteRange == UNSATISFIABLE) {
+            file.close();
+            connection.keepAlive = connection.keepAlive && complete;
+            head.append("HTTP/1.1 416 Range Not Satisfiable\r\n");
+            if (complete) head.append("Content-Range: bytes */").append(available).append("\r\n");
+            head.append("Content-Length: 0\r\n");
+            sendHead(connection, head, null);
+            return;
+        }
+
+        if (byteRange != null) {
+            start = byteRange[0];
+            end = byteRange[1] + 1;
+            head.append("HTTP/1.1 206 Partial Content\r\n")
+                    .append("Content-Range: bytes ").append(start).append('-').append(byteRange[1])
+                    .append('/').append(complete ? String.valueOf(available) : "*").append("\r\n")
+                    .append("Content-Length: ").append(end - start).append("\r\n");
+        } else if (complete) {
+            start = 0;
+            end = available;
+            head.append("HTTP/1.1 200 OK\r\n")
+                    .append("Content-Length: ").append(available).append("\r\n");
+        } else {
+            // The final length is not known yet, so the body is sent in chunks as it arrives
+            start = 0;
+            end = 0;
+            following = true;
+            head.append("HTTP/1.1 200 OK\r\n");
+            if (connection.http11) {
+                head.append("Transfer-Encoding: chunked\r\n");
+            } else {
+                connection.keepAlive = false; // The end of the body is marked by closing the connection
+            }
+        }
+        head.append("Content-Type: ").append(contentType).append("\r\n")
+                .append("Accept-Ranges: bytes\r\n");
+
+        if (headOnly) {
+            file.close();
+            sendHead(connection, head, null);
+            return;
+        }
+
+        connection.file = file;
+        connection.position = start;
+        connection.end = end;
+        connection.videoPath = following ? videoPath : null;
+        connection.partialPath = following ? partialPath : null;
+        connection.chunked = following && connection.http11;
+        connection.lastProgress = System.currentTimeMillis();
+        sendHead(connection, head, null);
+    }
+
+    /**
+     * @return The partial file of the most recently started upload of the
+     * video, or null if it is not being received.
+     */
+    private static Path findPartialFile(String name) throws IOException {
+        try (Stream<Path> files = Files.list(videoDirectory)) {
+            return files.filter(file -> Consumer.uploadIdOf(file.getFileName().toString(), name) >= 0)
+                    .max(Comparator.comparingLong(file -> Consumer.uploadIdOf(file.getFileName().toString(), name)))
+                    .orElse(null);
+        }
+    }
+
+    /**
+     * Parses a single {@code bytes=} range against the given length.
+     *
+     * @return The first and last byte of the range, {@link #UNSATISFIABLE} if the
+     * range lies past the end, or null if the range should be ignored.
+     */
+    static long[] parseRange(String range, long length) {
+        // Multiple ranges are not supported, so the whole video is sent instead
+        if (!range.startsWith("bytes=") || range.contains(",")) return null;
+
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1) return null;
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) return UNSATISFIABLE;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                long requestedEnd = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (requestedEnd < start) return null; // Invalid ranges are ignored
+                end = Math.min(requestedEnd, length - 1);
+            }
+            if (start >= length) return UNSATISFIABLE;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void sendText(Connection connection, int status, String reason, String body, boolean headOnly) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder()
+                .append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n")
+                .append("Content-Type: text/plain; charset=utf-8\r\n")
+                .append("Content-Length: ").append(bytes.length).append("\r\n");
+        sendHead(connection, head, headOnly ? null : bytes);
+    }
+
+    private static void sendHead(Connection connection, StringBuilder head, byte[] body) {
+        head.append("Connection: ").append(connection.keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteBuffer response = ByteBuffer.allocate(headBytes.length + (body != null ? body.length : 0));
+        response.put(headBytes);
+        if (body != null) response.put(body);
+        response.flip();
+
+        connection.response = response;
+        connection.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private static void handleWrite(Connection connection) throws IOException {
+        while (true) {
+            if (connection.response.hasRemaining()) {
+                connection.channel.write(connection.response);
+                if (connection.response.hasRemaining()) return; // Socket buffer is full, wait for OP_WRITE
+            }
+
+            FileChannel file = connection.file;
+            if (file == null) break;
+            while (connection.position < connection.end) {
+                long transferred = file.transferTo(connection.position, connection.end - connection.position, connection.channel);
+                if (transferred == 0) return; // Socket buffer is full, wait for OP_WRITE
+                connection.position += transferred;
+                connection.lastProgress = System.currentTimeMillis();
+            }
+            if (connection.partialPath == null) break;
+
+            // Following a video that is still being received
+            long available = file.size();
+            if (available <= connection.end) {
+                // Caught up with it; wait for more of it
+                connection.key.interestOps(0);
+                followers.add(connection);
+                return;
+            }
+            startChunk(connection, available);
+        }
+
+        finishResponse(connection);
+    }
+
+    /**
+     * Extends a followed response up to the given length of the growing file.
+     */
+    private static void startChunk(Connection connection, long available) {
+        long size = available - connection.end;
+        connection.end = available;
+        if (connection.chunked) {
+            // The previous chunk, if any, still needs its closing CRLF
+            String header = (connection.position > 0 ? "\r\n" : "") + Long.toHexString(size) + "\r\n";
+            connection.response = ByteBuffer.wrap(header.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * Completes a followed response whose upload has been committed.
+     */
+    private static void endFollowing(Connection connection) {
+        connection.videoPath = null;
+        connection.partialPath = null;
+        if (connection.chunked) {
+            String trailer = (connection.position > 0 ? "\r\n" : "") + "0\r\n\r\n";
+            connection.response = ByteBuffer.wrap(trailer.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * @return Whether the followed upload was committed with everything that has been sent.
+     */
+    private static boolean isCommitted(Connection connection) {
+        try {
+            return Files.size(connection.videoPath) == connection.position;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void finishResponse(Connection connection) throws IOException {
+        connection.closeFile();
+        if (!connection.keepAlive) {
+            connection.close();
+            return;
+        }
+
+        connection.key.interestOps(SelectionKey.OP_READ);
+        processRequest(connection); // The viewer may have pipelined another request
+    }
+
+    /**
+     * Resumes or ends responses that are following videos still being received.
+     */
+    private static void pollFollowers() {
+        long now = System.currentTimeMillis();
+        Iterator<Connection> iterator = followers.iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            try {
+                // Check for the partial file first, so bytes written just before it was renamed are not missed
+                boolean receiving = Files.exists(connection.partialPath);
+                if (connection.file.size() > connection.position) {
+                    iterator.remove();
+                    connection.key.interestOps(SelectionKey.OP_WRITE);
+                } else if (!receiving) {
+                    iterator.remove();
+                    if (isCommitted(connection)) {
+                        endFollowing(connection);
+                        connection.key.interestOps(SelectionKey.OP_WRITE);
+                    } else {
+                        // The upload failed, so the viewer must not take what it got for the whole video
+                        connection.abort();
+                    }
+                } else if (now - connection.lastProgress > FOLLOW_IDLE_MS) {
+                    iterator.remove();
+                    connection.abort();
+                }
+            } catch (IOException | RuntimeException e) {
+                iterator.remove();
+                connection.close();
+            }
+        }
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer buffer) {
+        for (int i = 0; i + 3 < buffer.position(); i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * State of a single viewer connection.
+     */
+    private static final class Connection {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private final ByteBuffer requestBuffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+        private ByteBuffer response;
+        private boolean http11;
+        private boolean keepAlive;
+
+        private FileChannel file;
+        private long position;
+        private long end;
+        // Set while following a video that is still being received
+        private Path videoPath;
+        private Path partialPath;
+        private boolean chunked;
+        private long lastProgress;
+
+        private Connection(SelectionKey key, SocketChannel channel) {
+            this.key = key;
+            this.channel = channel;
+        }
+
+        private void closeFile() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+                file = null;
+            }
+        }
+
+        /**
+         * Resets the connection, so the viewer sees an error rather than the end of the body.
+         */
+        private void abort() {
+            try {
+                channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+            } catch (IOException ignored) {
+            }
+            close();
+        }
+
+        private void close() {
+            closeFile();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -1,26 +1,91 @@
 package ph.dlsu.edu.ccs.stdiscm.jgang;
 
-import java.io.File;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class implements a leaky bucket queue, which controls the flow of videos
  * being uploaded by ensuring the queue doesn't exceed a max size. It helps prevent
  * overloading the system with too many videos at once.
+ * <p>
+ * The max size can be changed at runtime, and the queue keeps track of how long
+ * videos wait and how many are turned away so that it can be tuned.
  */
 public class VideoQueue {
-    private static final BlockingQueue<VideoFile> queue = new LinkedBlockingQueue<>(Integer.parseInt(ConsumerConfig.get("queue_size")));
+    private static final BlockingQueue<VideoFile> queue = new LinkedBlockingQueue<>();
+    private static volatile int capacity = 1;
 
-    public static boolean addVideo(VideoFile video) {
-        return queue.offer(video); // Returns false if full
+    private static final LongAdder waitNanos = new LongAdder();
+    private static final LongAdder taken = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+
+    public static void setCapacity(int capacity) {
+        VideoQueue.capacity = capacity;
+    }
+
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    public static synchronized boolean addVideo(VideoFile video) {
+        if (queue.size() >= capacity) {
+            rejected.increment();
+            return false;
+        }
+        return queue.offer(video);
     }
 
-    public static VideoFile getVideo() throws InterruptedException {
-        return queue.take(); // Blocks if empty
+    /**
+     * Waits up to the given time for a video.
+     *
+     * @return The next video, or null if none arrived in time.
+     */
+    public static VideoFile pollVideo(long timeout, TimeUnit unit) throws InterruptedException {
+        VideoFile video = queue.poll(timeout, unit);
+        return video != null ? record(video) : null;
     }
 
     public static synchronized boolean isFull() {
-        return queue.remainingCapacity() == 0;
+        return queue.size() >= capacity;
+    }
+
+    public static int size() {
+        return queue.size();
+    }
+
+    /**
+     * Counts a video that was turned away before it could be offered to the queue.
+     */
+    public static void recordRejection() {
+        rejected.increment();
+    }
+
+    /**
+     * @return The total time videos spent waiting in the queue, in nanoseconds, and resets it.
+     */
+    public static long drainWaitNanos() {
+        return waitNanos.sumThenReset();
+    }
+
+    /**
+     * @return The number of videos taken off the queue, and resets it.
+     */
+    public static long drainTaken() {
+        return taken.sumThenReset();
+    }
+
+    /**
+     * @return The number of videos turned away because the queue was full, and resets it.
+     */
+    public static long drainRejected() {
+        return rejected.sumThenReset();
+    }
+
+    private static VideoFile record(VideoFile video) {
+        waitNanos.add(System.nanoTime() - video.getQueuedAt());
+        taken.increment();
+        return video;
     }
 }
@@ -0,0 +1,72 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WorkerPool runs a task repeatedly on a number of threads that can be changed
+ * while the pool is running. When the pool shrinks, surplus workers finish
+ * their current run of the task before exiting, so no video is abandoned
+ * half-saved.
+ */
+public class WorkerPool {
+
+    /**
+     * A unit of work a worker runs over and over. It should return within a
+     * short time when there is nothing to do so that the worker can notice a
+     * smaller pool size.
+     */
+    public interface Task {
+        void runOnce() throws Exception;
+    }
+
+    private final String name;
+    private final Task task;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile int target;
+    private volatile boolean shutdown;
+
+    public WorkerPool(String name, Task task) {
+        this.name = name;
+        this.task = task;
+    }
+
+    /**
+     * Changes the number of workers, starting new ones right away and letting
+     * surplus ones exit after their current task.
+     */
+    public synchronized void resize(int size) {
+        target = size;
+        while (!shutdown && running.get() < target) {
+            running.incrementAndGet();
+            Thread worker = new Thread(this::work, name + "-" + nextId.incrementAndGet());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    public int size() {
+        return target;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    private void work() {
+        while (!shutdown && !Thread.currentThread().isInterrupted()) {
+            // Retire if the pool has shrunk below the number of running workers
+            int current = running.get();
+            if (current > target && running.compareAndSet(current, current - 1)) return;
+
+            try {
+                task.runOnce();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Log.error("Error in {}: {}", Thread.currentThread().getName(), e.getMessage(), e);
+            }
+        }
+        running.decrementAndGet();
+    }
+}
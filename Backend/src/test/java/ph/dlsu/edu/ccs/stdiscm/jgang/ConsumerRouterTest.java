@@ -0,0 +1,108 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsumerRouterTest {
+
+    private static ConsumerRouter router(ConsumerRouter.Strategy strategy) {
+        return new ConsumerRouter(ConsumerRouter.parseEndpoints("127.0.0.1:3005,127.0.0.1:3015,127.0.0.1:3025"), strategy);
+    }
+
+    @Test
+    void parsesEndpointList() {
+        List<InetSocketAddress> addresses = ConsumerRouter.parseEndpoints(" 127.0.0.1:3005 , localhost:3015,");
+        assertEquals(2, addresses.size());
+        assertEquals(3005, addresses.get(0).getPort());
+        assertEquals("localhost", addresses.get(1).getHostString());
+        assertThrows(IllegalArgumentException.class, () -> ConsumerRouter.parseEndpoints("127.0.0.1"));
+    }
+
+    @Test
+    void hashRoutesTheSameFileToTheSameConsumer() {
+        ConsumerRouter router = router(ConsumerRouter.Strategy.HASH);
+        for (int i = 0; i < 100; i++) {
+            String name = "video-" + i + ".mp4";
+            assertSame(router.select(name, Set.of()), router.select(name, Set.of()));
+        }
+    }
+
+    @Test
+    void hashSpreadsFilesAcrossConsumers() {
+        ConsumerRouter router = router(ConsumerRouter.Strategy.HASH);
+        Map<ConsumerRouter.Endpoint, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            counts.merge(router.select("video-" + i + ".mp4", Set.of()), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > 500, "uneven spread " + counts);
+        }
+    }
+
+    @Test
+    void hashWrapsAroundTheRingToTheOnlyUsableConsumer() {
+        ConsumerRouter router = router(ConsumerRouter.Strategy.HASH);
+        ConsumerRouter.Endpoint last = router.getEndpoints().get(2);
+        Set<ConsumerRouter.Endpoint> excluded = Set.of(router.getEndpoints().get(0), router.getEndpoints().get(1));
+
+        // Names that hash past the last point of the remaining consumer have to wrap to the start of the ring
+        for (int i = 0; i < 1000; i++) {
+            assertSame(last, router.select("video-" + i + ".mp4", excluded));
+        }
+    }
+
+    @Test
+    void hashSkipsEjectedConsumersAndKeepsTheRest() {
+        ConsumerRouter router = router(ConsumerRouter.Strategy.HASH);
+        Map<String, ConsumerRouter.Endpoint> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String name = "video-" + i + ".mp4";
+            before.put(name, router.select(name, Set.of()));
+        }
+
+        ConsumerRouter.Endpoint ejected = router.getEndpoints().get(1);
+        router.eject(ejected, "test");
+        assertFalse(ejected.isHealthy());
+
+        before.forEach((name, endpoint) -> {
+            ConsumerRouter.Endpoint after = router.select(name, Set.of());
+            assertNotSame(ejected, after);
+            // Only the files of the ejected consumer move
+            if (endpoint != ejected) assertSame(endpoint, after);
+        });
+    }
+
+    @Test
+    void returnsNullWhenNoConsumerIsLeft() {
+        for (ConsumerRouter.Strategy strategy : ConsumerRouter.Strategy.values()) {
+            ConsumerRouter router = router(strategy);
+            Set<ConsumerRouter.Endpoint> excluded = new HashSet<>(router.getEndpoints().subList(0, 2));
+            router.eject(router.getEndpoints().get(2), "test");
+            assertNull(router.select("video.mp4", excluded));
+        }
+    }
+
+    @Test
+    void leastBytesPicksTheLeastLoadedHealthyConsumer() {
+        ConsumerRouter router = router(ConsumerRouter.Strategy.LEAST_BYTES);
+        List<ConsumerRouter.Endpoint> endpoints = router.getEndpoints();
+        endpoints.get(0).addOutstandingBytes(300);
+        endpoints.get(1).addOutstandingBytes(100);
+        endpoints.get(2).addOutstandingBytes(200);
+
+        assertSame(endpoints.get(1), router.select("video.mp4", Set.of()));
+        assertSame(endpoints.get(2), router.select("video.mp4", Set.of(endpoints.get(1))));
+
+        router.eject(endpoints.get(1), "test");
+        assertSame(endpoints.get(2), router.select("video.mp4", Set.of()));
+
+        endpoints.get(0).addOutstandingBytes(-300);
+        assertSame(endpoints.get(0), router.select("video.mp4", Set.of()));
+    }
+}
@@ -0,0 +1,199 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryWatcherTest {
+    private static final long SETTLE_MS = 100;
+
+    @TempDir
+    Path directory;
+
+    private final List<String> uploads = new ArrayList<>();
+    private Predicate<File> uploader = file -> true;
+
+    private DirectoryWatcher watcher(ShipmentJournal journal) {
+        return new DirectoryWatcher(directory, journal, new DirectExecutor(), file -> {
+            uploads.add(file.getName());
+            return uploader.test(file);
+        }, SETTLE_MS);
+    }
+
+    private ShipmentJournal journal() throws IOException {
+        return new ShipmentJournal(directory.resolve(".journal"));
+    }
+
+    private Path video(String name, String contents) throws IOException {
+        Path file = directory.resolve(name);
+        Files.writeString(file, contents);
+        return file;
+    }
+
+    private static void settle() throws InterruptedException {
+        Thread.sleep(SETTLE_MS + 50);
+    }
+
+    @Test
+    void shipsVideosOnceTheyHaveSettled() throws Exception {
+        video("a.mp4", "aaaa");
+        DirectoryWatcher watcher = watcher(journal());
+        watcher.rescan();
+
+        watcher.tick();
+        watcher.tick();
+        assertEquals(List.of(), uploads);
+
+        settle();
+        watcher.tick();
+        assertEquals(List.of("a.mp4"), uploads);
+
+        // Shipped videos are not candidates any more
+        settle();
+        watcher.tick();
+        assertEquals(List.of("a.mp4"), uploads);
+    }
+
+    @Test
+    void waitsWhileAVideoIsStillBeingWritten() throws Exception {
+        video("a.mp4", "aa");
+        DirectoryWatcher watcher = watcher(journal());
+        watcher.rescan();
+        watcher.tick();
+
+        settle();
+        video("a.mp4", "aaaa"); // Grew since the last tick
+        watcher.tick();
+        assertEquals(List.of(), uploads);
+
+        settle();
+        watcher.tick();
+        assertEquals(List.of("a.mp4"), uploads);
+    }
+
+    @Test
+    void doesNotResendJournaledVideosAfterARestart() throws Exception {
+        video("a.mp4", "aaaa");
+        DirectoryWatcher first = watcher(journal());
+        first.rescan();
+        first.tick();
+        settle();
+        first.tick();
+        assertEquals(List.of("a.mp4"), uploads);
+
+        // A new watcher with a journal read back from disk, as after a restart
+        uploads.clear();
+        video("b.mp4", "bbb");
+        DirectoryWatcher restarted = watcher(journal());
+        restarted.rescan();
+        restarted.tick();
+        settle();
+        restarted.tick();
+        assertEquals(List.of("b.mp4"), uploads);
+    }
+
+    @Test
+    void resendsAVideoReplacedUnderTheSameName() throws Exception {
+        video("a.mp4", "aaaa");
+        ShipmentJournal journal = journal();
+        DirectoryWatcher watcher = watcher(journal);
+        watcher.rescan();
+        watcher.tick();
+        settle();
+        watcher.tick();
+
+        video("a.mp4", "a different video");
+        DirectoryWatcher restarted = watcher(journal());
+        restarted.rescan();
+        restarted.tick();
+        settle();
+        restarted.tick();
+        assertEquals(List.of("a.mp4", "a.mp4"), uploads);
+    }
+
+    @Test
+    void retriesFailedUploadsAfterSettlingAgain() throws Exception {
+        video("a.mp4", "aaaa");
+        ShipmentJournal journal = journal();
+        uploader = file -> uploads.size() > 1; // The first attempt fails
+        DirectoryWatcher watcher = watcher(journal);
+        watcher.rescan();
+        watcher.tick();
+        settle();
+        watcher.tick();
+        assertEquals(List.of("a.mp4"), uploads);
+        assertEquals(0, journal.size());
+
+        // The retry is requeued, then has to settle again
+        watcher.tick();
+        assertEquals(List.of("a.mp4"), uploads);
+        settle();
+        watcher.tick();
+        assertEquals(List.of("a.mp4", "a.mp4"), uploads);
+        assertEquals(1, journal.size());
+
+        settle();
+        watcher.tick();
+        assertEquals(2, uploads.size());
+    }
+
+    @Test
+    void ignoresHiddenFiles() throws Exception {
+        video(".partial", "xxxx");
+        DirectoryWatcher watcher = watcher(journal());
+        watcher.rescan();
+        watcher.tick();
+        settle();
+        watcher.tick();
+        assertEquals(List.of(), uploads);
+    }
+
+    /**
+     * Runs uploads on the calling thread, so each tick finishes its uploads before returning.
+     */
+    private static final class DirectExecutor extends AbstractExecutorService {
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
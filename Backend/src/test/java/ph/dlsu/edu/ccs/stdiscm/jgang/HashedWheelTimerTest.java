@@ -0,0 +1,94 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+    // Four slots of 10 ms, so one revolution of the wheel takes 40 ms
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 4);
+
+    @Test
+    void firesAfterTheDelayAndNeverBefore() throws InterruptedException {
+        long scheduledAt = System.nanoTime();
+        AtomicLong firedAt = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 35, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(firedAt.get() - scheduledAt);
+        assertTrue(elapsedMs >= 35, "fired early after " + elapsedMs + " ms");
+    }
+
+    @Test
+    void waitsOutEveryRoundOfDelaysLongerThanTheWheel() throws InterruptedException {
+        // 250 ms is more than six revolutions, so the timeout lands in a slot that is passed several times first
+        long scheduledAt = System.nanoTime();
+        AtomicLong firedAt = new AtomicLong();
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(() -> {
+            firedAt.set(System.nanoTime());
+            fired.countDown();
+        }, 250, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(firedAt.get() - scheduledAt);
+        assertTrue(elapsedMs >= 250, "fired early after " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 250 + 40 * 5, "fired a revolution too late after " + elapsedMs + " ms");
+    }
+
+    @Test
+    void firesInDeadlineOrderAcrossSlotsAndRounds() throws InterruptedException {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        int[] delays = {130, 30, 210, 70, 50, 170};
+        CountDownLatch fired = new CountDownLatch(delays.length);
+        for (int delay : delays) {
+            timer.schedule(() -> {
+                order.add(delay);
+                fired.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(30, 50, 70, 130, 170, 210), order);
+    }
+
+    @Test
+    void firesTimeoutsThatAreAlreadyDue() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(2);
+        timer.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+        timer.schedule(fired::countDown, -5, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelledTimeoutsDoNotRun() throws InterruptedException {
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CountDownLatch later = new CountDownLatch(1);
+        timer.schedule(() -> cancelledRan.set(true), 50, TimeUnit.MILLISECONDS).cancel();
+        timer.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.get());
+    }
+
+    @Test
+    void keepsRunningWhenATaskThrows() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(() -> {
+            throw new IllegalStateException("test");
+        }, 10, TimeUnit.MILLISECONDS);
+        timer.schedule(fired::countDown, 30, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+}
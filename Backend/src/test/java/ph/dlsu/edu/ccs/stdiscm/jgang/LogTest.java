@@ -0,0 +1,113 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogTest {
+
+    private static boolean offer(Log.Ring ring, String template, Object arg) {
+        return ring.offer(Log.Level.INFO, 0, "test", template, arg, null, null, 1);
+    }
+
+    @Test
+    void ringKeepsOrderAcrossManyWraps() {
+        Log.Ring ring = new Log.Ring(4);
+        for (int i = 0; i < 50; i++) {
+            // Fill up to three slots at a time so the positions wrap around the end of the ring
+            int batch = i % 3 + 1;
+            for (int j = 0; j < batch; j++) {
+                assertTrue(offer(ring, "message {}", i * 10 + j));
+            }
+            for (int j = 0; j < batch; j++) {
+                Log.Event event = ring.peek();
+                assertNotNull(event);
+                assertEquals(i * 10 + j, event.arg(0));
+                ring.release();
+            }
+            assertNull(ring.peek());
+        }
+    }
+
+    @Test
+    void fullRingRejectsUntilTheReaderFreesASlot() {
+        Log.Ring ring = new Log.Ring(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(ring, "message {}", i));
+        }
+        assertFalse(offer(ring, "message {}", 4));
+        assertFalse(offer(ring, "message {}", 5));
+
+        assertEquals(0, ring.peek().arg(0));
+        ring.release();
+        assertTrue(offer(ring, "message {}", 6));
+        assertFalse(offer(ring, "message {}", 7));
+
+        // The rejected messages never show up
+        for (int expected : new int[]{1, 2, 3, 6}) {
+            assertEquals(expected, ring.peek().arg(0));
+            ring.release();
+        }
+        assertNull(ring.peek());
+    }
+
+    @Test
+    void releasedSlotsDropTheirArguments() {
+        Log.Ring ring = new Log.Ring(2);
+        offer(ring, "message {}", "argument");
+        Log.Event event = ring.peek();
+        ring.release();
+        assertNull(event.arg0);
+        assertNull(event.template);
+    }
+
+    @Test
+    void ringSizeMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new Log.Ring(6));
+        assertThrows(IllegalArgumentException.class, () -> new Log.Ring(0));
+    }
+
+    @Test
+    void limitsRepeatsOfTheSameMessage() {
+        Log.RateLimiter limiter = new Log.RateLimiter();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.allow("Queue is full", 1000, 3));
+        }
+        assertFalse(limiter.allow("Queue is full", 1500, 3));
+        assertFalse(limiter.allow("Queue is full", 1999, 3));
+
+        // A new second starts a new window
+        assertTrue(limiter.allow("Queue is full", 2000, 3));
+    }
+
+    @Test
+    void doesNotLimitMessagesThatDifferInTheirArguments() {
+        Log.RateLimiter limiter = new Log.RateLimiter();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.allow("Received file: video-" + i + ".mp4", 1000, 3));
+        }
+    }
+
+    @Test
+    void sweepReportsSuppressedRepeatsAndForgetsOldMessages() {
+        Log.RateLimiter limiter = new Log.RateLimiter();
+        for (int i = 0; i < 5; i++) {
+            limiter.allow("Queue is full", 1000, 2);
+        }
+        limiter.allow("Received file: a.mp4", 1000, 2);
+
+        Map<String, Long> reported = new HashMap<>();
+        limiter.sweep(1500, reported::put);
+        assertEquals(Map.of("Queue is full", 3L), reported);
+        assertEquals(2, limiter.size());
+
+        // Already reported, and both windows are over
+        reported.clear();
+        limiter.sweep(2000, reported::put);
+        assertTrue(reported.isEmpty());
+        assertEquals(0, limiter.size());
+    }
+}
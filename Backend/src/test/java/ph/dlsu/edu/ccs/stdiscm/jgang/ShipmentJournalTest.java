@@ -0,0 +1,71 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShipmentJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void remembersShippedVideosAfterARestart() throws IOException {
+        Path path = directory.resolve("journal");
+        ShipmentJournal journal = new ShipmentJournal(path);
+        journal.record("a.mp4", 100, 1000);
+        journal.record("b.mp4", 200, 2000);
+
+        ShipmentJournal reloaded = new ShipmentJournal(path);
+        assertEquals(2, reloaded.size());
+        assertTrue(reloaded.isShipped("a.mp4", 100, 1000));
+        assertTrue(reloaded.isShipped("b.mp4", 200, 2000));
+        assertFalse(reloaded.isShipped("c.mp4", 100, 1000));
+    }
+
+    @Test
+    void replacedVideoIsNotShipped() throws IOException {
+        ShipmentJournal journal = new ShipmentJournal(directory.resolve("journal"));
+        journal.record("a.mp4", 100, 1000);
+        assertFalse(journal.isShipped("a.mp4", 150, 1000));
+        assertFalse(journal.isShipped("a.mp4", 100, 3000));
+    }
+
+    @Test
+    void laterEntriesWin() throws IOException {
+        Path path = directory.resolve("journal");
+        ShipmentJournal journal = new ShipmentJournal(path);
+        journal.record("a.mp4", 100, 1000);
+        journal.record("a.mp4", 150, 3000);
+        assertTrue(journal.isShipped("a.mp4", 150, 3000));
+
+        ShipmentJournal reloaded = new ShipmentJournal(path);
+        assertEquals(1, reloaded.size());
+        assertTrue(reloaded.isShipped("a.mp4", 150, 3000));
+        assertFalse(reloaded.isShipped("a.mp4", 100, 1000));
+    }
+
+    @Test
+    void appendsToTheExistingJournal() throws IOException {
+        Path path = directory.resolve("journal");
+        new ShipmentJournal(path).record("a.mp4", 100, 1000);
+        new ShipmentJournal(path).record("b.mp4", 200, 2000);
+
+        assertEquals(2, Files.readAllLines(path).size());
+        assertEquals(2, new ShipmentJournal(path).size());
+    }
+
+    @Test
+    void skipsLinesWithoutAName() throws IOException {
+        Path path = directory.resolve("journal");
+        Files.writeString(path, "\n\t100\t1000\na.mp4\t100\t1000\n");
+
+        ShipmentJournal journal = new ShipmentJournal(path);
+        assertEquals(1, journal.size());
+        assertTrue(journal.isShipped("a.mp4", 100, 1000));
+    }
+}
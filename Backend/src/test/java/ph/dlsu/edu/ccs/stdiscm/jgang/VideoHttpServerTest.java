@@ -0,0 +1,56 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoHttpServerTest {
+
+    @Test
+    void parsesClosedRange() {
+        assertArrayEquals(new long[]{0, 99}, VideoHttpServer.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{500, 500}, VideoHttpServer.parseRange("bytes=500-500", 1000));
+    }
+
+    @Test
+    void clampsEndToLength() {
+        assertArrayEquals(new long[]{900, 999}, VideoHttpServer.parseRange("bytes=900-5000", 1000));
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        assertArrayEquals(new long[]{100, 999}, VideoHttpServer.parseRange("bytes=100-", 1000));
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertArrayEquals(new long[]{990, 999}, VideoHttpServer.parseRange("bytes=-10", 1000));
+    }
+
+    @Test
+    void suffixLongerThanVideoCoversWholeVideo() {
+        assertArrayEquals(new long[]{0, 999}, VideoHttpServer.parseRange("bytes=-5000", 1000));
+    }
+
+    @Test
+    void rangePastTheEndIsUnsatisfiable() {
+        assertSame(VideoHttpServer.UNSATISFIABLE, VideoHttpServer.parseRange("bytes=1000-", 1000));
+        assertSame(VideoHttpServer.UNSATISFIABLE, VideoHttpServer.parseRange("bytes=2000-3000", 1000));
+    }
+
+    @Test
+    void emptySuffixAndEmptyVideoAreUnsatisfiable() {
+        assertSame(VideoHttpServer.UNSATISFIABLE, VideoHttpServer.parseRange("bytes=-0", 1000));
+        assertSame(VideoHttpServer.UNSATISFIABLE, VideoHttpServer.parseRange("bytes=-10", 0));
+        assertSame(VideoHttpServer.UNSATISFIABLE, VideoHttpServer.parseRange("bytes=0-", 0));
+    }
+
+    @Test
+    void ignoresRangesItCannotServe() {
+        assertNull(VideoHttpServer.parseRange("bytes=0-9,20-29", 1000)); // Multiple ranges
+        assertNull(VideoHttpServer.parseRange("items=0-9", 1000));
+        assertNull(VideoHttpServer.parseRange("bytes=50-10", 1000)); // End before start
+        assertNull(VideoHttpServer.parseRange("bytes=abc-", 1000));
+        assertNull(VideoHttpServer.parseRange("bytes=10", 1000));
+    }
+}
@@ -18,16 +18,38 @@ import javafx.scene.media.MediaView;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.*;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class GUI extends Application {
 
     private static String VIDEO_FOLDER;
+    // When set, videos are listed and streamed from the consumer instead of the shared folder
+    private static String MEDIA_BASE_URL;
+    // Videos still being received by the consumer carry this suffix
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final long RECONNECT_DELAY_MS = 5000;
     private final Map<String, MediaPlayer> previewPlayers = new ConcurrentHashMap<>();
+    private final Map<String, VBox> videoCards = new LinkedHashMap<>(); // Only touched on the FX thread
+    private final VideoListing listing = new VideoListing(); // Merged on the FX thread
+    private volatile String currentFilter = "";
     private Stage primaryStage;
     private Scene mainScene;
     private Scene fullscreenScene;
@@ -47,9 +69,8 @@ public class GUI extends Application {
         // Initialize fullscreen scene
         createFullscreenScene();
 
-        // Load videos into the grid
-        loadVideos("");
-        setupDirectoryWatcher();
+        // Load videos into the grid once connected to the consumer, or from the folder otherwise
+        setupCommitSubscriber();
 
         // Set the initial scene
         primaryStage.setScene(mainScene);
@@ -131,51 +152,89 @@ public class GUI extends Application {
     }
 
     private void loadVideos(String filter) {
-        File folder = new File(VIDEO_FOLDER);
-        File[] files = folder.listFiles();
-
-        if (files != null) {
-            Platform.runLater(() -> {
-                videoGrid.getChildren().clear();
-                for (File file : files) {
-                    if (file.isFile() && file.getName().toLowerCase().contains(filter)) {
-                        if (isFileStable(file)) {
-                            addVideoCard(file.getName());
-                        }
-                    }
-                }
-            });
+        currentFilter = filter;
+        long listedAt = System.nanoTime();
+
+        // Listing may go over the network, so keep it off the FX thread
+        CompletableFuture.supplyAsync(this::listVideos).thenAccept(names -> {
+            // A failed listing says nothing about which videos exist, so keep the grid as it is
+            if (names != null) Platform.runLater(() -> mergeVideos(names, listedAt));
+        });
+    }
+
+    /**
+     * Brings the grid in line with a listing. Videos announced by commit events
+     * after the listing was started are kept, since the listing may not have
+     * seen them yet. Must be called on the FX thread.
+     */
+    private void mergeVideos(List<String> names, long listedAt) {
+        Set<String> present = listing.merge(names, listedAt);
+        if (present == null) return; // A newer listing was already applied
+
+        Iterator<Map.Entry<String, VBox>> cards = videoCards.entrySet().iterator();
+        while (cards.hasNext()) {
+            Map.Entry<String, VBox> card = cards.next();
+            String fileName = card.getKey();
+            if (!present.contains(fileName) || !fileName.toLowerCase().contains(currentFilter)) {
+                videoGrid.getChildren().remove(card.getValue());
+                MediaPlayer player = previewPlayers.remove(fileName);
+                if (player != null) player.dispose();
+                cards.remove();
+            }
         }
+
+        present.forEach(this::showVideo);
     }
 
-    private boolean isFileStable(File file) {
-        try {
-            long size1 = file.length();
-            Thread.sleep(500);
-            long size2 = file.length();
-            if (size1 != size2) return false;
-
-            // Try opening the file as a Media object
-            try {
-                Media testMedia = new Media(file.toURI().toString());
-                testMedia.errorProperty().addListener((obs, oldErr, newErr) -> {
-                    if (newErr != null) {
-                        System.err.println("Media error: " + newErr.getMessage());
-                    }
-                });
-            } catch (Exception e) {
-                System.err.println("File " + file.getName() + " is not a valid media yet: " + e.getMessage());
-                return false;
+    /**
+     * @return The names of all complete videos, or null if they could not be listed.
+     */
+    private List<String> listVideos() {
+        List<String> names = new ArrayList<>();
+
+        if (MEDIA_BASE_URL != null) {
+            try (InputStream listing = URI.create(MEDIA_BASE_URL).toURL().openStream();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(listing, StandardCharsets.UTF_8))) {
+                String name;
+                while ((name = reader.readLine()) != null) {
+                    if (!name.isEmpty()) names.add(name);
+                }
+            } catch (IOException e) {
+                System.err.println("Error listing videos from " + MEDIA_BASE_URL + ": " + e.getMessage());
+                return null;
+            }
+            return names;
+        }
+
+        File[] files = new File(VIDEO_FOLDER).listFiles();
+        if (files == null) {
+            System.err.println("Error listing videos in " + VIDEO_FOLDER);
+            return null;
+        }
+        for (File file : files) {
+            // Partial files are still being written by the consumer
+            if (file.isFile() && !file.getName().endsWith(PARTIAL_SUFFIX)) {
+                names.add(file.getName());
             }
+        }
+        return names;
+    }
+
+    private static String mediaUri(String fileName) {
+        if (MEDIA_BASE_URL != null) {
+            return MEDIA_BASE_URL + URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20");
+        }
+        return new File(VIDEO_FOLDER, fileName).toURI().toString();
+    }
 
-            return true;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return false;
+    // Must be called on the FX thread
+    private void showVideo(String fileName) {
+        if (fileName.toLowerCase().contains(currentFilter) && !videoCards.containsKey(fileName)) {
+            videoCards.put(fileName, addVideoCard(fileName));
         }
     }
 
-    private void addVideoCard(String fileName) {
+    private VBox addVideoCard(String fileName) {
         VBox card = new VBox(5); // VBox to hold thumbnail and title
         card.getStyleClass().add("video-card");
 
@@ -185,14 +244,14 @@ public class GUI extends Application {
 
         card.getChildren().addAll(thumbnail, title); // Add thumbnail and title to card
         videoGrid.getChildren().add(card); // Add card to grid
+        return card;
     }
 
     private StackPane createThumbnail(String fileName) {
         StackPane thumbnail = new StackPane();
         thumbnail.getStyleClass().add("video-thumbnail");
 
-        String filePath = VIDEO_FOLDER + "/" + fileName;
-        Media media = new Media(new File(filePath).toURI().toString());
+        Media media = new Media(mediaUri(fileName));
         MediaPlayer player = new MediaPlayer(media);
 
         player.setOnReady(() -> {
@@ -248,18 +307,18 @@ public class GUI extends Application {
     }
 
     private void goToFullscreen(String fileName) {
-        currentVideoPath = VIDEO_FOLDER + "/" + fileName;
+        currentVideoPath = mediaUri(fileName);
         playFullVideo(currentVideoPath);
         primaryStage.setScene(fullscreenScene);
     }
 
-    private void playFullVideo(String videoPath) {
+    private void playFullVideo(String videoUri) {
         if (mainPlayer != null) {
             stopPlayback();
         }
 
         try {
-            Media media = new Media(new File(videoPath).toURI().toString());
+            Media media = new Media(videoUri);
             mainPlayer = new MediaPlayer(media);
             mainMediaView.setMediaPlayer(mainPlayer);
 
@@ -281,30 +340,71 @@ public class GUI extends Application {
         }
     }
 
-    private void setupDirectoryWatcher() {
+    /**
+     * Subscribes to the consumer's commit events so that a card is added exactly
+     * once for every video that has been completely received. When the consumer
+     * is not running, the video folder is scanned instead and the subscription
+     * is retried in the background.
+     */
+    private void setupCommitSubscriber() {
+        String host = Config.get("ip_addr");
+        int port;
         try {
-            WatchService watchService = FileSystems.getDefault().newWatchService();
-            Paths.get(VIDEO_FOLDER).register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
-
-            new Thread(() -> {
-                while (!Thread.currentThread().isInterrupted()) {
-                    try {
-                        WatchKey key = watchService.take();
-                        for (WatchEvent<?> event : key.pollEvents()) {
-                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
-                                String newFile = event.context().toString();
-                                Platform.runLater(() -> addVideoCard(newFile));
-                            }
+            port = Integer.parseInt(Config.get("event_port"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid or missing event port, only scanning the video folder: " + e.getMessage());
+            loadVideos(currentFilter);
+            return;
+        }
+
+        Thread subscriber = new Thread(() -> {
+            boolean scanned = false;
+            while (!Thread.currentThread().isInterrupted()) {
+                try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+                     BufferedReader reader = new BufferedReader(
+                             new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8))) {
+                    String event;
+                    while ((event = reader.readLine()) != null) {
+                        if (event.equals("subscribed")) {
+                            System.out.println("Subscribed to commit events from " + host + ":" + port);
+                            // Every later commit will be announced, so pick up everything committed before now
+                            loadVideos(currentFilter);
+                        } else {
+                            handleCommitEvent(event);
                         }
-                        key.reset();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
                     }
+                    System.err.println("Consumer closed the commit event stream");
+                    scanned = true; // The grid already reflects what was committed
+                } catch (IOException e) {
+                    if (!scanned) {
+                        System.err.println("Consumer not reachable, scanning video folder instead: " + e.getMessage());
+                        loadVideos(currentFilter);
+                        scanned = true;
+                    }
+                }
+
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            }).start();
-        } catch (IOException e) {
-            System.err.println("Directory watcher error: " + e.getMessage());
+            }
+        }, "commit-subscriber");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    private void handleCommitEvent(String event) {
+        if (!event.startsWith("committed:")) {
+            System.err.println("Unknown commit event: " + event);
+            return;
         }
+
+        // Format: committed:<name>\t<size>\t<path>
+        String[] fields = event.substring(10).split("\t");
+        String fileName = fields[0];
+        listing.committed(fileName, System.nanoTime());
+        Platform.runLater(() -> showVideo(fileName));
     }
 
     public static void main(String[] args) {
@@ -314,20 +414,26 @@ public class GUI extends Application {
         }
 
         VIDEO_FOLDER = Config.get("video_directory");
-
-        if (VIDEO_FOLDER == null || VIDEO_FOLDER.isEmpty()) {
-            System.err.println("Video folder not specified in configuration.");
-            return;
-        }
-
-        // Check if the video folder exists
-        File folder = new File(VIDEO_FOLDER);
-        if (!folder.exists() || !folder.isDirectory()) {
-            // Create the folder if it doesn't exist
-            if (!folder.mkdirs()) {
-                System.err.println("Failed to create video directory: " + VIDEO_FOLDER);
+        MEDIA_BASE_URL = Config.get("media_base_url");
+        if (MEDIA_BASE_URL != null && MEDIA_BASE_URL.isBlank()) MEDIA_BASE_URL = null;
+        if (MEDIA_BASE_URL != null && !MEDIA_BASE_URL.endsWith("/")) MEDIA_BASE_URL += "/";
+
+        // A local folder is only needed when videos are not streamed from the consumer
+        if (MEDIA_BASE_URL == null) {
+            if (VIDEO_FOLDER == null || VIDEO_FOLDER.isEmpty()) {
+                System.err.println("Video folder not specified in configuration.");
                 return;
             }
+
+            // Check if the video folder exists
+            File folder = new File(VIDEO_FOLDER);
+            if (!folder.exists() || !folder.isDirectory()) {
+                // Create the folder if it doesn't exist
+                if (!folder.mkdirs()) {
+                    System.err.println("Failed to create video directory: " + VIDEO_FOLDER);
+                    return;
+                }
+            }
         }
 
         launch(args);
@@ -0,0 +1,49 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang.probset3;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of which videos exist by combining full listings with the videos
+ * announced by commit events. A listing can take a while to arrive, so a video
+ * committed after the listing was started is kept even if the listing does not
+ * have it, and a listing that was started before one already applied is
+ * ignored.
+ * <p>
+ * Times are {@link System#nanoTime()} values, which may be negative, so they
+ * are only ever compared by their difference.
+ */
+class VideoListing {
+    private final Map<String, Long> commitTimes = new ConcurrentHashMap<>();
+    private boolean listed; // Whether any listing has been applied yet
+    private long lastListedAt;
+
+    /**
+     * Records a video announced by a commit event. Safe to call from any thread.
+     */
+    void committed(String fileName, long committedAt) {
+        commitTimes.put(fileName, committedAt);
+    }
+
+    /**
+     * Applies a listing that was started at the given time. Not thread-safe;
+     * call it from one thread only.
+     *
+     * @return Every video that exists according to the listing and the later
+     * commits, or null if a newer listing has already been applied.
+     */
+    Set<String> merge(List<String> names, long listedAt) {
+        if (listed && listedAt - lastListedAt < 0) return null;
+        listed = true;
+        lastListedAt = listedAt;
+
+        Set<String> present = new LinkedHashSet<>(names);
+        // The listing already covers everything committed before it started
+        commitTimes.values().removeIf(committedAt -> committedAt - listedAt < 0);
+        present.addAll(commitTimes.keySet());
+        return present;
+    }
+}
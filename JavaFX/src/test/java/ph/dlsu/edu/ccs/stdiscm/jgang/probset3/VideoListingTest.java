@@ -0,0 +1,56 @@
+package ph.dlsu.edu.ccs.stdiscm.jgang.probset3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoListingTest {
+
+    @Test
+    void appliesTheFirstListingWhateverTheClockReads() {
+        // nanoTime may be positive, negative or near either end of the range
+        for (long listedAt : new long[]{2164078456786L, -5, 0, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            VideoListing listing = new VideoListing();
+            assertEquals(Set.of("a.mp4"), listing.merge(List.of("a.mp4"), listedAt));
+        }
+    }
+
+    @Test
+    void appliesNewerListingsAndIgnoresOlderOnes() {
+        VideoListing listing = new VideoListing();
+        assertNotNull(listing.merge(List.of("a.mp4"), 100));
+        assertEquals(Set.of("b.mp4"), listing.merge(List.of("b.mp4"), 200));
+        assertNull(listing.merge(List.of("a.mp4"), 150));
+
+        // An older listing that was ignored does not hold back the next one
+        assertEquals(Set.of(), listing.merge(List.of(), 300));
+    }
+
+    @Test
+    void comparesTimesAcrossTheOverflowOfTheClock() {
+        VideoListing listing = new VideoListing();
+        assertNotNull(listing.merge(List.of(), Long.MAX_VALUE - 10));
+        assertNotNull(listing.merge(List.of(), Long.MAX_VALUE + 10)); // Wrapped, but still later
+        assertNull(listing.merge(List.of(), Long.MAX_VALUE));
+    }
+
+    @Test
+    void keepsVideosCommittedAfterTheListingStarted() {
+        VideoListing listing = new VideoListing();
+        listing.committed("late.mp4", 250);
+        assertEquals(Set.of("a.mp4", "late.mp4"), listing.merge(List.of("a.mp4"), 200));
+    }
+
+    @Test
+    void dropsVideosCommittedBeforeTheListingStarted() {
+        VideoListing listing = new VideoListing();
+        listing.committed("deleted.mp4", 150);
+        assertEquals(Set.of("a.mp4"), listing.merge(List.of("a.mp4"), 200));
+
+        // The listing covered it, so it is forgotten for good
+        assertEquals(Set.of(), listing.merge(List.of(), 300));
+    }
+}